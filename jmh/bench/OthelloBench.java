@@ -0,0 +1,150 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for move generation, evaluation and search. The engine lives
+ * in the default package, which JMH does not allow benchmarks in, so the work
+ * itself comes from BenchTasks through functional interfaces.
+ *
+ * Build and run with JSON output:
+ *
+ * mvn -B -Pbench package
+ * java -jar target/benchmarks.jar -rf json -rff results.json
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OthelloBench {
+
+    @State(Scope.Thread)
+    public static class Perft {
+        @Param({ "BitBoard", "ArrayBoard" })
+        public String board;
+
+        @Param({ "6" })
+        public int depth;
+
+        LongSupplier task;
+
+        @Setup
+        public void setup() throws ReflectiveOperationException {
+            task = (LongSupplier) tasks().getMethod("perft", String.class, int.class).invoke(null, board, depth);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Evaluate {
+        @Param({ "1", "2", "3", "4" })
+        public int select;
+
+        IntSupplier task;
+
+        @Setup
+        public void setup() throws ReflectiveOperationException {
+            task = (IntSupplier) tasks().getMethod("evaluate", int.class).invoke(null, select);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EvaluateCached {
+        @Param({ "3" }) // the only heuristic AI caches
+        public int select;
+
+        IntSupplier task;
+
+        @Setup
+        public void setup() throws ReflectiveOperationException {
+            task = (IntSupplier) tasks().getMethod("evaluateCached", int.class).invoke(null, select);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Search {
+        @Param({ "1", "2", "3", "4" })
+        public int select;
+
+        @Param({ "5" })
+        public int depth;
+
+        LongSupplier task;
+
+        @Setup
+        public void setup() throws ReflectiveOperationException {
+            task = (LongSupplier) tasks().getMethod("search", int.class, int.class).invoke(null, select, depth);
+        }
+    }
+
+    /**
+     * Nodes searched, reported by JMH as a rate next to the timing
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    /**
+     * Leaves of the move tree from the start position
+     */
+    @Benchmark
+    public long perft(Perft state) {
+        return state.task.getAsLong();
+    }
+
+    /**
+     * One heuristic call on each of the 16 suite positions
+     */
+    @Benchmark
+    public int evaluate(Evaluate state) {
+        return state.task.getAsInt();
+    }
+
+    /**
+     * The same calls answered from a warm EvalCache
+     */
+    @Benchmark
+    public int evaluateCached(EvaluateCached state) {
+        return state.task.getAsInt();
+    }
+
+    /**
+     * Fixed-depth search of each of the 16 suite positions, as suites per second
+     * with the nodes per second alongside
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long search(Search state, Nodes counter) {
+        long nodes = state.task.getAsLong();
+        counter.nodes += nodes;
+        return nodes;
+    }
+
+    private static Class<?> tasks() throws ClassNotFoundException {
+        return Class.forName("BenchTasks");
+    }
+}
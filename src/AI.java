@@ -1,14 +1,19 @@
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.Stack;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
- * The AI is created using a minimax algorithm w/ a-B pruning Multiple
- * heuristics are implemented which are expected to act at unique difficulty
- * levels.
+ * The AI is created using a minimax algorithm w/ a-B pruning, written in
+ * negamax form so both players share one code path. Multiple heuristics are
+ * implemented which are expected to act at unique difficulty levels.
  *
  * @author Jacob Caggese
  * @date 4/18/18
@@ -19,9 +24,45 @@ public class AI {
     private char player;
     private char opponent;
     private Game game;
-    private int depth = 5; // depth of minimax search
+    private int depth = 5; // depth of minimax search, in plies from the root
     private int select; // heuristic choice
+    private long nodes; // nodes visited by the last search
+    private long timeLimit; // milliseconds per move, 0 searches to a fixed depth
+    private int depthReached; // deepest fully searched depth of the last search
+    private int hashMegabytes = 16; // transposition table budget, 0 for none
+    private TranspositionTable table; // kept between moves, allocated by the first search
+    private int threads = 1; // search threads, including the caller's
+    private ExecutorService pool; // runs the helper searchers
+    private int endgameEmpties = 14; // solve exactly at or below this many empty squares
+    private EndgameSolver solver = new EndgameSolver();
+    private OpeningBook book; // may be null
+    private PatternEval patternEval; // weights for heuristic 4, seeded ones unless set
+    private NeuralNet network; // weights for heuristic 5, which needs them set
+    private ProbCut probCut; // fitted for this AI's heuristic, null searches full width
+    private double probCutThreshold = 1.5; // standard deviations of confidence needed for a cut
+    private int aspirationWindow; // 0 for full window iterations
+    private boolean ponder; // search the opponent's replies while waiting for them
+    private ExecutorService ponderThread;
+    private Future<?> pondering; // running ponder task, null when idle
+    private volatile Searcher ponderSearcher; // searcher the ponder task is running
+    private volatile boolean ponderStopped;
+    private final Map<Long, Searcher> pondered = new HashMap<>(); // finished ponder searches by key
+    private ExecutorService searchThread; // runs getMoveAsync
+    private volatile CompletableFuture<Pair> active; // asynchronous move being searched
+    private volatile Consumer<SearchProgress> listener; // of the asynchronous move
+    private volatile Searcher current; // main searcher of the move being searched
+    private EvalCache evalCache = EvalCache.shared(); // values of the hard heuristic, shared by every AI
     private HashMap<Pair, Integer> heuristicMap = new HashMap<>();
+    private String source; // how the last move was found, for its metrics
+    private Searcher[] searchers; // that found the last move, the main one first
+    private SearchMetrics metrics; // of the last move, null before the first
+    private volatile int analysisLines = 1; // root moves to score exactly, set from the GUI's thread
+    private List<AnalysisLine> analysis = List.of(); // lines of the last move
+    private static final int[][] BOARD_WEIGHTS = { { 100000, -10000, 75, 25, 25, 75, -10000, 100000 },
+            { -10000, -10000, 75, 50, 50, 75, -10000, -10000 }, { 75, 75, 75, 65, 65, 75, 75, 75 },
+            { 25, 50, 65, 25, 25, 65, 50, 25 }, { 25, 50, 65, 25, 25, 65, 50, 25 },
+            { 75, 75, 75, 65, 65, 75, 75, 75 }, { -10000, -10000, 75, 50, 50, 75, -10000, -10000 },
+            { 100000, -1000, 75, 25, 25, 75, -10000, 100000 } };
 
     /**
      * Construct AI
@@ -37,141 +78,402 @@ public class AI {
     }
 
     /**
-     * First layer minimax The real work occurs in minimaxR (Recursive minimax)
+     * Search the game's current position
      *
      * @return The pair corresponding to the best move
      */
     public Pair getMove() {
-        Pair choice = null;
-        int max;
-        int check;
-        char[][] checkBoard;
-        // Generate pairs that correspond to first layer board states
-        ArrayList<ArrayList<Pair>> plays = game.generateMoves(player, game.getBoard());
-        LinkedHashSet<Pair> moveSet = new LinkedHashSet<>();
-        plays.forEach(play -> moveSet.add(play.get(0))); // Unique moves, maintained insertion order
-        ArrayList<Pair> moves = new ArrayList<>(moveSet);
-        if (plays.isEmpty()) // hack to fix a bug where the stack is empty at no plays
-            return new Pair(-1, -1);
-        Stack<char[][]> boards = generateBoards(player, game.getBoard());
-        if (!boards.empty()) {
-            // track heuristics
-            heuristicMap.clear();
-            checkBoard = boards.pop();
-            max = minimaxR(true, null, null, 1, generateBoards(player, checkBoard), checkBoard);
-            // this max can be used to prune the tree at the highest level, used as
-            // rootValMAX in next call
-            choice = moves.get(0);
-            heuristicMap.put(choice, max);
-            for (int i = 1; i < moves.size(); i++) {
-                checkBoard = boards.pop();
-                Pair play = moves.get(i);
-                check = minimaxR(true, max, null, 1, generateBoards(player, checkBoard), checkBoard);
-                heuristicMap.put(play ,check);
-                if (check > max) {
-                    max = check;
-                    choice = play;
-                }
-            }
+        return getMove(game.getPosition());
+    }
+
+    /**
+     * Search an arbitrary position with this AI as the side to move. The position
+     * itself is left untouched.
+     *
+     * With a time limit set the search deepens one ply at a time, starting each
+     * iteration from the previous iteration's best move, until the limit runs
+     * out. The move from the last fully searched depth is returned.
+     *
+     * With more than one thread, helper searchers run iterative deepening on the
+     * same position and share the transposition table. Only the main searcher's
+     * move is used, so the result is always a full search of the same depth.
+     *
+     * With few enough empty squares the position is solved exactly instead. A
+     * timed solve gets half the time limit and falls back to the normal search
+     * if it cannot finish. Positions in the opening book are not searched at all.
+     *
+     * With pondering on, the opponent's replies are searched in the background
+     * after every move (see setPonder).
+     *
+     * @return The pair corresponding to the best move, {-1,-1} if there is none
+     */
+    public Pair getMove(Board position) {
+        long start = System.nanoTime();
+        Searcher hit = finishPondering(position);
+        Pair choice;
+        if (hit != null) { // already searched while the opponent was thinking
+            nodes = hit.getNodes(); // so the metrics describe the search that found the move
+            depthReached = hit.getDepthReached();
+            heuristicMap = hit.getScores();
+            analysis = hit.getLines();
+            choice = Pair.of(hit.getBestMove());
+            source = "ponder";
+            searchers = new Searcher[] { hit };
+            report(depthReached, choice, heuristicMap.get(choice));
+        } else {
+            choice = search(position);
+        }
+        if (choice != Pair.NONE) {
+            SearchMetrics move = new SearchMetrics(source, choice, depthReached, nodes, System.nanoTime() - start);
+            for (int i = 0; i < searchers.length; i++)
+                move.add(searchers[i], i == 0);
+            metrics = move;
+            EngineMetrics.record(move);
         }
+        if (ponder && choice != Pair.NONE && !isCancelled())
+            startPondering(position, choice.getSquare());
         return choice;
     }
 
     /**
-     * Recursive minimax First checks that there are child nodes to explore. If not,
-     * return this nodes heuristic Then checks depth. If we've reached maximum
-     * depth, return heuristic (leaf). Then checks if max node or min. Recursively
-     * determine the max and min from nodes below. Deep A-B Pruning implemented
-     * (Fairly sure this is deep)
+     * Search a position on a background thread, leaving the caller free. The
+     * position is copied first, so the caller may change it afterwards.
      *
-     * @param max
-     * @param rootValMAX
-     *            Current pruning value at max nodes
-     * @param rootValMIN
-     *            Current pruning value at min nodes
-     * @param boards
-     *            layer of child boards
-     * @param thisBoard
-     *            parent node
-     * @return nodeValue
-     */
-    private int minimaxR(boolean max, Integer rootValMAX, Integer rootValMIN, int nodeDepth, Stack<char[][]> boards,
-                         char[][] thisBoard) {
-        int nodeVal;
-        int tempVal;
-        if (boards.empty()) {
-            return heuristic(thisBoard);
+     * The listener, if not null, is called on the search thread with the best
+     * move so far whenever the search finds a new one and whenever it finishes
+     * a depth. Positions from the book or a ponder search give a single
+     * report.
+     *
+     * Cancelling the future stops the search soon after. An AI searches one
+     * move at a time, so wait for or cancel the previous future before asking
+     * for the next move.
+     *
+     * @return the move, completed on the search thread
+     */
+    public CompletableFuture<Pair> getMoveAsync(Board position, Consumer<SearchProgress> listener) {
+        Board copy = position.copy();
+        CompletableFuture<Pair> future = new CompletableFuture<>();
+        future.whenComplete((move, e) -> {
+            if (future.isCancelled())
+                cancel(future);
+        });
+        if (searchThread == null)
+            searchThread = daemonThread("AI search");
+        searchThread.execute(() -> {
+            if (future.isDone()) // cancelled before it started
+                return;
+            active = future;
+            this.listener = listener;
+            try {
+                future.complete(getMove(copy));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                this.listener = null;
+                active = null;
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Stop the search of future if it is the one running
+     */
+    private void cancel(CompletableFuture<Pair> future) {
+        if (active != future)
+            return;
+        Searcher main = current;
+        if (main != null)
+            main.stop();
+        solver.stop();
+    }
+
+    /**
+     * @return true if the asynchronous move being searched was cancelled
+     */
+    private boolean isCancelled() {
+        CompletableFuture<Pair> future = active;
+        return future != null && future.isCancelled();
+    }
+
+    private void report(int depth, Pair move, int score) {
+        Consumer<SearchProgress> listener = this.listener;
+        if (listener != null)
+            listener.accept(new SearchProgress(depth, move, score, nodes, true, analysis));
+    }
+
+    private static ExecutorService daemonThread(String name) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true); // never keep the game from exiting
+            return thread;
+        });
+    }
+
+    private Pair search(Board position) {
+        nodes = 0;
+        depthReached = 0;
+        searchers = new Searcher[0];
+        analysis = List.of();
+        // Bit mask of the squares that correspond to first layer board states
+        long plays = position.getMoves(player);
+        if (plays == 0) // hack to fix a bug where the stack is empty at no plays
+            return Pair.NONE;
+        if (book != null) {
+            int square = book.move(position, player);
+            if (square >= 0 && (plays & (1L << square)) != 0) {
+                Pair choice = Pair.of(square);
+                heuristicMap = new HashMap<>();
+                heuristicMap.put(choice, book.score(position, player));
+                if (analysisLines > 1) // the book knows no other lines
+                    analysis = List.of(new AnalysisLine(choice, book.score(position, player), new int[] { square }));
+                source = "book";
+                report(0, choice, book.score(position, player));
+                return choice;
+            }
         }
-        thisBoard = boards.pop();
-        nodeVal = heuristic(thisBoard);
-        if (nodeDepth >= depth) { // return heuristic
-            if (max) {
-                while (!boards.empty()) { // while there are still children, compare children
-                    thisBoard = boards.pop();
-                    tempVal = heuristic(thisBoard);
-                    if (tempVal > nodeVal)
-                        nodeVal = tempVal;
-                }
-            } else {
-                while (!boards.empty()) { // while there are still children, compare children
-                    thisBoard = boards.pop();
-                    tempVal = heuristic(thisBoard);
-                    if (tempVal < nodeVal)
-                        nodeVal = tempVal;
-                }
+        if (table == null && hashMegabytes > 0)
+            table = new TranspositionTable(hashMegabytes);
+        if (table != null)
+            table.newSearch();
+        long deadline = timeLimit > 0 ? System.nanoTime() + timeLimit * 1000000 : 0;
+        int empty = Long.bitCount(~(position.getDiscs('b') | position.getDiscs('w')));
+        solver.reset(); // before the check, so a cancel from now on stops the solve
+        if (empty <= endgameEmpties && !isCancelled()) {
+            long solveDeadline = timeLimit > 0 ? System.nanoTime() + timeLimit * 500000 : 0;
+            int square = solver.solve(position, player, solveDeadline);
+            nodes = solver.getNodes();
+            if (!solver.isStopped()) {
+                Pair choice = Pair.of(square);
+                heuristicMap = new HashMap<>();
+                heuristicMap.put(choice, solver.getScore()); // final disc differential
+                if (analysisLines > 1)
+                    analysis = solvedLines(position, square, solver.getScore(), solveDeadline);
+                for (AnalysisLine line : analysis)
+                    heuristicMap.put(line.getMove(), line.getScore());
+                depthReached = empty;
+                source = "solve";
+                report(empty, choice, solver.getScore());
+                return choice;
             }
-            return nodeVal;
         }
-        if (max) {
-            while (!boards.empty()) { // while there are still children, compare children
-                thisBoard = boards.pop();
-                tempVal = minimaxR(!max, rootValMAX, rootValMIN, nodeDepth + 1, generateBoards(opponent, thisBoard),
-                        thisBoard);
-                if (rootValMAX == null) // pruning segment, if rootVal is null, set it
-                    rootValMAX = tempVal;
-                else if (tempVal < rootValMAX) // if the min node can not be higher than this max node
-                    return rootValMAX; // prune
-                if (tempVal > nodeVal)
-                    nodeVal = tempVal;
+        Searcher main = new Searcher(this, player, position, table, deadline);
+        main.setListener(listener);
+        current = main;
+        if (isCancelled()) // cancelled before current was set
+            main.stop();
+        Searcher[] helpers = new Searcher[threads - 1];
+        Future<?>[] running = new Future<?>[helpers.length];
+        for (int i = 0; i < helpers.length; i++) {
+            Searcher helper = new Searcher(this, player, position, table, deadline);
+            int start = 1 + i % 2; // stagger depths so the helpers do not all search the same tree
+            helpers[i] = helper;
+            running[i] = pool.submit(() -> helper.deepen(start));
+        }
+        int best;
+        if (timeLimit > 0)
+            best = main.deepen(1);
+        else if (analysisLines > 1) // deepen so the lines can be shown as they improve
+            best = main.deepen(1, depth);
+        else
+            best = main.search(depth);
+        nodes += main.getNodes();
+        current = null;
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i].stop();
+            try {
+                running[i].get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
             }
-        } else { // min
-            while (!boards.empty()) { // while there are still children, compare children
-                thisBoard = boards.pop();
-                tempVal = minimaxR(!max, rootValMAX, rootValMIN, nodeDepth + 1, generateBoards(player, thisBoard),
-                        thisBoard);
-                if (tempVal < nodeVal)
-                    nodeVal = tempVal;
-                if (rootValMIN == null) // pruning segment, if rootVal is null, set it
-                    rootValMIN = tempVal;
-                else if (tempVal > rootValMIN) // if the max node can not be lower than this min node
-                    return rootValMIN; // prune
-                if (tempVal > nodeVal)
-                    nodeVal = tempVal;
+            nodes += helpers[i].getNodes();
+        }
+        source = "search";
+        searchers = new Searcher[helpers.length + 1];
+        searchers[0] = main;
+        System.arraycopy(helpers, 0, searchers, 1, helpers.length);
+        // track heuristics
+        heuristicMap = main.getScores();
+        analysis = main.getLines();
+        depthReached = main.getDepthReached();
+        return Pair.of(best);
+    }
+
+    /**
+     * Exact analysis lines of a solved position: each other root move is
+     * solved in turn, and the best analysisLines moves are kept with just
+     * the move as their line, as the solver records no principal variation
+     *
+     * @param best
+     *            the solved move, first in the lines even if others tie it
+     * @return the lines, or the solved move alone if a solve was stopped
+     */
+    private List<AnalysisLine> solvedLines(Board position, int best, int score, long deadline) {
+        List<AnalysisLine> lines = new ArrayList<>();
+        lines.add(new AnalysisLine(Pair.of(best), score, new int[] { best }));
+        for (long rest = position.getMoves(player) & ~(1L << best); rest != 0; rest &= rest - 1) {
+            int square = Long.numberOfTrailingZeros(rest);
+            Board child = position.copy();
+            child.play(player, square);
+            int value;
+            if (child.getMoves(opponent) != 0) {
+                solver.solve(child, opponent, deadline);
+                value = -solver.getScore();
+            } else if (child.getMoves(player) != 0) { // the opponent passes
+                solver.solve(child, player, deadline);
+                value = solver.getScore();
+            } else {
+                value = child.count(player) - child.count(opponent);
+            }
+            nodes += solver.getNodes();
+            if (solver.isStopped())
+                return List.of(lines.get(0));
+            lines.add(new AnalysisLine(Pair.of(square), value, new int[] { square }));
+        }
+        lines.sort(Comparator.comparingInt(line -> -line.getScore())); // stable, so best stays first
+        return List.copyOf(lines.subList(0, Math.min(analysisLines, lines.size())));
+    }
+
+    /**
+     * Start searching the position after move in the background, as if the
+     * opponent had already replied. Replies are taken in turn, the one this
+     * AI's own search expected first, and each is searched to the fixed depth
+     * (or, with a time limit, to one ply past the depth of the last search, and
+     * then a ply deeper each round until stopped). The searches share the
+     * transposition table, so even a reply that was not finished makes the real
+     * search faster.
+     */
+    private void startPondering(Board position, int move) {
+        Board next = position.copy();
+        next.play(player, move);
+        int empty = Long.bitCount(~(next.getDiscs('b') | next.getDiscs('w')));
+        if (next.getMoves(opponent) == 0 || empty - 1 <= endgameEmpties) // nothing to guess or solved anyway
+            return;
+        if (ponderThread == null)
+            ponderThread = daemonThread("AI ponder");
+        int target = timeLimit > 0 ? depthReached + 1 : depth;
+        ponderStopped = false;
+        pondering = ponderThread.submit(() -> ponder(next, target, empty - 1));
+    }
+
+    private void ponder(Board position, int target, int empty) {
+        MoveList replies = new MoveList();
+        position.getMoves(opponent, replies);
+        if (table != null) {
+            long entry = table.probe(Zobrist.key(position.getHash(), opponent));
+            if (entry != 0)
+                replies.moveToFront(TranspositionTable.move(entry));
+        }
+        for (int limit = Math.max(1, target); limit <= empty && !ponderStopped; limit++) {
+            for (int k = 0; k < replies.size() && !ponderStopped; k++) {
+                Board reply = position.copy();
+                reply.play(opponent, replies.getSquare(k), replies.getFlips(k));
+                if (reply.getMoves(player) == 0)
+                    continue;
+                Searcher searcher = new Searcher(this, player, reply, table, 0);
+                ponderSearcher = searcher;
+                if (ponderStopped) // stopped before the searcher could be seen
+                    break;
+                searcher.deepen(1, limit);
+                if (searcher.getDepthReached() >= limit)
+                    pondered.put(Zobrist.key(reply.getHash(), player), searcher);
             }
+            if (timeLimit == 0) // every reply is searched to the depth a move needs
+                break;
         }
-        return nodeVal;
     }
 
     /**
-     * Generate the possible boards from the set of possible moves
+     * Stop pondering and wait for the ponder thread
      *
-     * @param player
-     * @param board
-     *            The current board state
-     * @return
+     * @param position
+     *            position this AI now has to move in, may be null
+     * @return a finished ponder search of position deep enough to use as it
+     *         is, otherwise null
+     */
+    private Searcher finishPondering(Board position) {
+        if (pondering == null)
+            return null;
+        ponderStopped = true;
+        Searcher searcher = ponderSearcher;
+        if (searcher != null)
+            searcher.stop();
+        try {
+            pondering.get();
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+        }
+        pondering = null;
+        ponderSearcher = null;
+        Searcher hit = position != null ? pondered.get(Zobrist.key(position.getHash(), player)) : null;
+        pondered.clear();
+        if (hit != null && timeLimit == 0 && hit.getDepthReached() >= depth
+                && (position.getMoves(player) & (1L << hit.getBestMove())) != 0)
+            return hit;
+        return null;
+    }
+
+    /**
+     * Heuristic from the point of view of side. The heuristics all score the
+     * board for this AI, so the opponent simply gets the negated value.
      */
-    private Stack<char[][]> generateBoards(char player, char[][] board) {
-        Stack<char[][]> boards = new Stack<char[][]>();
-        ArrayList<ArrayList<Pair>> moves = game.generateMoves(player, board);
-        HashSet<Pair> usedPairs = new HashSet<Pair>(); // to prevent non-unique boards
-        for (ArrayList<Pair> move : moves) {
-            Pair moveSelect = move.get(0); // Determines the new tile placement
-            if (!usedPairs.contains(moveSelect)) {
-                usedPairs.add(moveSelect);
-                boards.push(selectSpace(moveSelect, player, moves, board));
+    int evaluate(Board board, char side) {
+        int value;
+        if (evalCache != null && select == 3) {
+            long key = EvalCache.key(board.getHash(), select, player);
+            long cached = evalCache.get(key);
+            if (cached != EvalCache.MISS) {
+                value = (int) cached;
+            } else {
+                value = heuristic(board);
+                evalCache.put(key, value);
             }
+        } else {
+            value = heuristic(board);
         }
-        return boards;
+        return side == player ? value : -value;
+    }
+
+    /**
+     * Pattern heuristic from the point of view of side, using pattern codes that
+     * were kept up to date during the search instead of reading the board
+     */
+    int evaluate(PatternIndex patterns, char side) {
+        return getPatternEval().score(patterns, side);
+    }
+
+    /**
+     * @return true if the heuristic is the pattern evaluation, which searchers
+     *         update move by move
+     */
+    boolean usesPatterns() {
+        return select == 4;
+    }
+
+    /**
+     * @return the network if the heuristic is the neural network, which
+     *         searchers evaluate in batches, otherwise null
+     */
+    NeuralNet getNetwork() {
+        return select == 5 ? network : null;
+    }
+
+    ProbCut getProbCut() {
+        return probCut;
+    }
+
+    double getProbCutThreshold() {
+        return probCutThreshold;
+    }
+
+    int getAspirationWindow() {
+        return aspirationWindow;
+    }
+
+    private PatternEval getPatternEval() {
+        if (patternEval == null)
+            patternEval = PatternEval.seeded();
+        return patternEval;
     }
 
     /**
@@ -181,7 +483,7 @@ public class AI {
      * @param board
      * @return
      */
-    private int heuristic(char[][] board) {
+    private int heuristic(Board board) {
         switch (select) {
             case 1:
                 return simpleHeuristic(board);
@@ -189,6 +491,12 @@ public class AI {
                 return mediumHeuristic(board);
             case 3:
                 return hardHeuristic(board);
+            case 4:
+                return getPatternEval().score(board, player);
+            case 5:
+                if (network == null) // no weights loaded
+                    return simpleHeuristic(board);
+                return network.score(board.getDiscs(player), board.getDiscs(opponent));
             default:
                 return simpleHeuristic(board);
         }
@@ -201,15 +509,8 @@ public class AI {
      *
      * @param board
      */
-    private int simpleHeuristic(char[][] board) {
-        int count = 0;
-        for (char[] row : board) {
-            for (char space : row) {
-                if (space == player)
-                    count++;
-            }
-        }
-        return count;
+    private int simpleHeuristic(Board board) {
+        return board.count(player);
     }
 
     /**
@@ -224,18 +525,13 @@ public class AI {
      *
      * @param board
      */
-    private int mediumHeuristic(char[][] board) {
+    private int mediumHeuristic(Board board) {
         int count = 0;
-        int[][] boardHeuristic = { { 100000, -10000, 75, 25, 25, 75, -10000, 100000 },
-                { -10000, -10000, 75, 50, 50, 75, -10000, -10000 }, { 75, 75, 75, 65, 65, 75, 75, 75 },
-                { 25, 50, 65, 25, 25, 65, 50, 25 }, { 25, 50, 65, 25, 25, 65, 50, 25 },
-                { 75, 75, 75, 65, 65, 75, 75, 75 }, { -10000, -10000, 75, 50, 50, 75, -10000, -10000 },
-                { 100000, -1000, 75, 25, 25, 75, -10000, 100000 } };
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board.length; j++) {
-                if (board[i][j] == player)
-                    count += boardHeuristic[i][j];
-            }
+        long discs = board.getDiscs(player);
+        while (discs != 0) {
+            int square = Long.numberOfTrailingZeros(discs);
+            discs &= discs - 1;
+            count += BOARD_WEIGHTS[square / 8][square % 8];
         }
         return count;
     }
@@ -244,49 +540,26 @@ public class AI {
      * Generate heuristic value based on board configuration This heuristic counts
      * possible positions from which the player's pieces may be flipped. It thereby
      * seeks to reduce the effectiveness of the other player's best turn. To do
-     * this, it will use the generate moves method from the game class and count all
-     * affected pairs. (Everything but first item in the generated ArrayLists) It is
-     * hoped to be a difficult heuristic
+     * this, it will generate the opponent's moves and count all tiles each of them
+     * would flip. It is hoped to be a difficult heuristic
      *
      * @param board
      */
-    private int hardHeuristic(char[][] board) {
+    private int hardHeuristic(Board board) {
         int count = 0;
-        ArrayList<ArrayList<Pair>> moves = game.generateMoves(opponent, board);
-        for (ArrayList<Pair> move : moves) {
-            for (int i = 1; i < move.size(); i++)
-                count++;
+        long moves = board.getMoves(opponent);
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            count += Long.bitCount(board.getFlips(opponent, square));
         }
         // Return -count so that the maximum value is preferable.
         return -count;
     }
 
-    /**
-     * Modified version of the selectSpace method in Game class Generates new board
-     * state
-     *
-     * @param pair
-     *            The new tile to place
-     * @param player
-     *            The color of tile to place
-     * @param moves
-     *            The previously generated moves
-     * @return The new board state
-     */
-    private char[][] selectSpace(Pair pair, char player, ArrayList<ArrayList<Pair>> moves, char[][] board) {
-        char[][] retBoard = deepCopy(board);
-        for (ArrayList<Pair> pairs : moves) {
-            if (pair.equals(pairs.get(0))) {
-                game.swap(player, pairs, retBoard); // swap all between pieces
-            }
-        }
-        retBoard[pair.getX()][pair.getY()] = player; // add new piece to board
-        return retBoard;
-    }
-
-    private void printBoard(char[][] board) {
+    private void printBoard(Board board) {
         String retStr = "";
-        for (char[] row : board) {
+        for (char[] row : board.toArray()) {
             for (char space : row)
                 retStr += space + " ";
             retStr += "\n";
@@ -294,14 +567,6 @@ public class AI {
         System.out.println(retStr);
     }
 
-    private char[][] deepCopy(char[][] board) {
-        char[][] newBoard = new char[8][8];
-        for (int i = 0; i < board.length; i++) {
-            newBoard[i] = Arrays.copyOf(board[i], 8);
-        }
-        return newBoard;
-    }
-
     public String getPlayer() {
         if (player == 'w')
             return "White";
@@ -309,7 +574,199 @@ public class AI {
             return "Black";
     }
 
-    public HashMap getHeuristicMap(){
+    public HashMap<Pair, Integer> getHeuristicMap() {
         return heuristicMap;
     }
+
+    /**
+     * Analysis mode. With more than one line, the search finds exact scores
+     * for the best lines root moves, each with its principal variation,
+     * instead of just the best move: every root move is searched against the
+     * worst score still in the lines rather than against the best, so the
+     * lines share one search and one transposition table. A fixed depth is
+     * then reached by iterative deepening, with the lines of every finished
+     * depth reported to getMoveAsync listeners. The heuristic map holds only
+     * the lines' exact scores.
+     *
+     * The move played does not depend on the lines: a book position still
+     * plays the book move, its only line, and a position the endgame solver
+     * takes still plays the solved move, with every root move then solved for
+     * the lines, scored in final discs.
+     *
+     * @param lines
+     *            root moves to score exactly, 1 for normal play
+     */
+    public void setAnalysisLines(int lines) {
+        analysisLines = Math.max(1, lines);
+    }
+
+    int getAnalysisLines() {
+        return analysisLines;
+    }
+
+    /**
+     * @return the analysis lines of the last move, best first, empty unless
+     *         analysis lines were set
+     */
+    public List<AnalysisLine> getAnalysis() {
+        return analysis;
+    }
+
+    /**
+     * @return what the last move's search did, null before the first move;
+     *         totals over all moves are in EngineMetrics
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Cache for heuristic values, the process-wide EvalCache.shared() unless
+     * set. Only the hard heuristic is cached; the others cost less to compute
+     * than to look up.
+     *
+     * @param evalCache
+     *            cache to use, null to always compute
+     */
+    public void setEvalCache(EvalCache evalCache) {
+        this.evalCache = evalCache;
+    }
+
+    /**
+     * Resize the transposition table, dropping its entries
+     *
+     * @param megabytes
+     *            memory budget, 0 to search without a table
+     */
+    public void setHashSize(int megabytes) {
+        hashMegabytes = megabytes;
+        table = null; // the next search allocates the new size
+    }
+
+    /**
+     * Forget every stored search result, keeping the table's size
+     */
+    public void clearHash() {
+        if (table != null)
+            table.clear();
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Search by time instead of depth
+     *
+     * @param milliseconds
+     *            budget per move, 0 to go back to the fixed depth
+     */
+    public void setTimeLimit(long milliseconds) {
+        timeLimit = milliseconds;
+    }
+
+    /**
+     * Search with several threads sharing the transposition table
+     *
+     * @param threads
+     *            total search threads, 1 searches on the calling thread only
+     */
+    public void setThreads(int threads) {
+        if (pool != null)
+            pool.shutdownNow();
+        this.threads = Math.max(1, threads);
+        pool = null;
+        if (this.threads > 1) {
+            pool = Executors.newFixedThreadPool(this.threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "AI helper");
+                thread.setDaemon(true); // never keep the game from exiting
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * @param empties
+     *            solve the game exactly once this few squares are empty, 0 to
+     *            never use the endgame solver
+     */
+    public void setEndgameEmpties(int empties) {
+        endgameEmpties = empties;
+    }
+
+    /**
+     * @param book
+     *            opening book to play from before searching, null for none
+     */
+    public void setBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * @param patternEval
+     *            trained weights for the pattern heuristic (select 4)
+     */
+    public void setPatternEval(PatternEval patternEval) {
+        this.patternEval = patternEval;
+    }
+
+    /**
+     * @param network
+     *            weights for the neural network heuristic (select 5)
+     */
+    public void setNetwork(NeuralNet network) {
+        this.network = network;
+    }
+
+    /**
+     * Search selectively with Multi-ProbCut
+     *
+     * @param probCut
+     *            parameters fitted for this AI's heuristic, null to search full
+     *            width again
+     * @param threshold
+     *            how sure a shallow search must be before a node is cut, in
+     *            standard deviations of the fit; lower cuts more
+     */
+    public void setProbCut(ProbCut probCut, double threshold) {
+        this.probCut = probCut;
+        probCutThreshold = threshold;
+    }
+
+    /**
+     * @param window
+     *            half width, in heuristic units, of the window around the last
+     *            iteration's score that timed searches start each iteration
+     *            with, 0 to always search the full window
+     */
+    public void setAspirationWindow(int window) {
+        aspirationWindow = window;
+    }
+
+    /**
+     * Search on the opponent's time. After each move the likely replies are
+     * searched on a background thread until the next getMove, which returns at
+     * once if the reply that was played had already been searched to the full
+     * depth.
+     */
+    public void setPonder(boolean ponder) {
+        if (!ponder)
+            stopPondering();
+        this.ponder = ponder;
+    }
+
+    /**
+     * Stop any background search, for instance when the game is over
+     */
+    public void stopPondering() {
+        finishPondering(null);
+    }
+
+    public int getDepthReached() {
+        return depthReached;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
 }
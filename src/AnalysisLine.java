@@ -0,0 +1,42 @@
+import java.util.Arrays;
+
+/**
+ * One of the best root moves found by an analysis search (see
+ * AI.setAnalysisLines), with its exact score at the searched depth and the line
+ * of play the search expects after it.
+ */
+public final class AnalysisLine {
+    private final Pair move;
+    private final int score;
+    private final int[] principalVariation;
+
+    AnalysisLine(Pair move, int score, int[] principalVariation) {
+        this.move = move;
+        this.score = score;
+        this.principalVariation = principalVariation;
+    }
+
+    public Pair getMove() {
+        return move;
+    }
+
+    /**
+     * @return heuristic value of the move for the side to move, its final
+     *         disc differential in a solved position or its book score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return squares of the expected line, starting with the move
+     */
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+
+    @Override
+    public String toString() {
+        return move + " " + score + " " + Arrays.toString(principalVariation);
+    }
+}
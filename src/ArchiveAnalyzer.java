@@ -0,0 +1,241 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batch analysis of a game archive. Every game is replayed and every position
+ * in it (before each move) is searched, and the positions are written out
+ * with the engine's best move and score. The archive is streamed one game at
+ * a time, so memory stays bounded however many games it holds:
+ *
+ * the reader replays games and queues positions for a fixed pool of worker
+ * threads, and when the queue is full it searches the position itself, which
+ * holds back the reading; the workers' result lines go through a bounded
+ * queue to a writer thread that fills a direct buffer and writes it to the
+ * output file through a FileChannel. If writing fails the run stops: the
+ * reader and the workers give up on the queue, queued positions are dropped
+ * and main throws the error.
+ *
+ * Positions repeat a lot across games, openings above all, so each position
+ * is only analysed the first time it is met. The positions seen are kept in
+ * an EvalCache used as a bounded set: when it is full it forgets positions
+ * that have not come up again, so a rare position may now and then be
+ * analysed twice, but common ones never are.
+ *
+ * The archive has one game per line, its moves written as column and row,
+ * a1 to h8, with or without spaces, for example f5d6c3d3c4. Passes are not
+ * written; a side without a legal move simply passes. A game with an illegal
+ * or unreadable move is reported and skipped from that move on.
+ *
+ * Each output line is a position as 64 squares row by row (b, w or -), the
+ * side to move, the best move, its score, what the score is and the depth
+ * searched. The score is in heuristic units after a search, marked search,
+ * but with few enough empty squares the position is solved and the score is
+ * the exact final disc differential, marked exact, with the empty squares as
+ * the depth. Lines are written as workers finish, not in archive order.
+ *
+ * Usage: java ArchiveAnalyzer [archive] [output] [heuristic] [depth] [threads]
+ * [dedup megabytes]
+ */
+public class ArchiveAnalyzer {
+    private static final int HASH_MB = 4; // per AI, each thread has two
+    private static final int QUEUED_PER_THREAD = 64; // positions waiting for a worker
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final Object END = new Object(); // tells the writer to finish
+
+    private final int select, depth;
+    private final ThreadLocal<AI[]> engines = new ThreadLocal<>(); // black, white
+    private final BlockingQueue<Object> results = new ArrayBlockingQueue<>(4096); // lines, then END
+    private final AtomicLong analysed = new AtomicLong(); // lines written to the output
+    private volatile Exception failure; // why the writer stopped early, null while it is fine
+
+    private ArchiveAnalyzer(int select, int depth) {
+        this.select = select;
+        this.depth = depth;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path archive = Paths.get(args.length > 0 ? args[0] : "games.txt");
+        Path output = Paths.get(args.length > 1 ? args[1] : "analysis.txt");
+        int select = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        int dedupMegabytes = args.length > 5 ? Integer.parseInt(args[5]) : 64;
+
+        ArchiveAnalyzer analyzer = new ArchiveAnalyzer(select, depth);
+        FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        EvalCache seen = new EvalCache((long) dedupMegabytes * 1024 * 1024);
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUED_PER_THREAD), new ThreadPoolExecutor.CallerRunsPolicy());
+        Thread writer = new Thread(() -> analyzer.write(channel), "Archive writer");
+        writer.start();
+
+        long start = System.nanoTime();
+        long games = 0, positions = 0, skipped = 0, lineNumber = 0;
+        try (BufferedReader in = Files.newBufferedReader(archive, StandardCharsets.US_ASCII)) {
+            String line;
+            while (analyzer.failure == null && (line = in.readLine()) != null) {
+                lineNumber++;
+                String moves = line.replaceAll("\\s", "").toLowerCase();
+                if (moves.isEmpty())
+                    continue;
+                games++;
+                Board board = new BitBoard();
+                char player = 'b';
+                for (int k = 0; k <= moves.length(); k += 2) {
+                    if (board.getMoves(player) == 0) { // pass
+                        player = player == 'w' ? 'b' : 'w';
+                        if (board.getMoves(player) == 0)
+                            break;
+                    }
+                    positions++;
+                    if (seen.get(Zobrist.key(board.getHash(), player)) != EvalCache.MISS) {
+                        skipped++;
+                    } else {
+                        seen.put(Zobrist.key(board.getHash(), player), 0);
+                        Board position = board.copy();
+                        char side = player;
+                        workers.execute(() -> analyzer.analyse(position, side));
+                    }
+                    if (k >= moves.length()) // the position after the last move
+                        break;
+                    int square = k + 1 < moves.length() ? square(moves.charAt(k), moves.charAt(k + 1)) : -1;
+                    if (square < 0 || (board.getMoves(player) & (1L << square)) == 0) {
+                        System.err.println("Line " + lineNumber + ": illegal move "
+                                + moves.substring(k, Math.min(k + 2, moves.length())) + ", rest of game skipped");
+                        break;
+                    }
+                    board.play(player, square);
+                    player = player == 'w' ? 'b' : 'w';
+                }
+                if (games % 10000 == 0)
+                    System.err.printf("%d games, %d positions, %d analysed%n", games, positions,
+                            analyzer.analysed.get());
+            }
+        } finally {
+            if (analyzer.failure != null)
+                workers.shutdownNow();
+            else
+                workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            analyzer.send(END);
+            writer.join();
+        }
+        if (analyzer.failure != null)
+            throw new IOException("Writing " + output + " failed", analyzer.failure);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games, %d positions, %d analysed, %d duplicates skipped (%d forgotten)%n", games,
+                positions, analyzer.analysed.get(), skipped, seen.getEvictions());
+        System.out.printf("%.1f seconds, %.0f positions/s, %.0f analysed/s%n", seconds, positions / seconds,
+                analyzer.analysed.get() / seconds);
+    }
+
+    /**
+     * @return square index of a move written as column and row, -1 if it is
+     *         not one
+     */
+    static int square(char column, char row) {
+        if (column < 'a' || column > 'h' || row < '1' || row > '8')
+            return -1;
+        return 8 * (row - '1') + (column - 'a');
+    }
+
+    static String name(int square) {
+        return "" + (char) ('a' + square % 8) + (char) ('1' + square / 8);
+    }
+
+    /**
+     * Search position with this thread's AI for side and queue the result line
+     */
+    private void analyse(Board position, char side) {
+        if (failure != null)
+            return;
+        AI[] ai = engines.get();
+        if (ai == null) {
+            ai = new AI[] { new AI('b', null, select), new AI('w', null, select) };
+            for (AI engine : ai) {
+                engine.setDepth(depth);
+                engine.setHashSize(HASH_MB);
+            }
+            engines.set(ai);
+        }
+        AI engine = ai[side == 'b' ? 0 : 1];
+        Pair move = engine.getMove(position);
+        StringBuilder line = new StringBuilder(80);
+        long black = position.getDiscs('b'), white = position.getDiscs('w');
+        for (int square = 0; square < 64; square++)
+            line.append((black >>> square & 1) != 0 ? 'b' : (white >>> square & 1) != 0 ? 'w' : '-');
+        String source = engine.getMetrics().getSource();
+        line.append(' ').append(side).append(' ').append(name(move.getSquare())).append(' ')
+                .append(engine.getHeuristicMap().get(move)).append(' ')
+                .append(source.equals("solve") ? "exact" : source).append(' ').append(engine.getDepthReached())
+                .append('\n');
+        try {
+            send(line.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue item for the writer, waiting while the queue is full
+     *
+     * @return false if the writer has failed and item was dropped
+     */
+    private boolean send(Object item) throws InterruptedException {
+        while (failure == null) {
+            if (results.offer(item, 100, TimeUnit.MILLISECONDS))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Write result lines to channel until END arrives, then close it. Lines
+     * count as analysed once they are written, not when they are buffered.
+     */
+    private void write(FileChannel channel) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        int buffered = 0; // lines in buffer
+        try (channel) {
+            while (true) {
+                Object item = results.take();
+                if (item == END)
+                    break;
+                String line = (String) item;
+                if (buffer.remaining() < line.length()) {
+                    flush(channel, buffer);
+                    analysed.addAndGet(buffered);
+                    buffered = 0;
+                }
+                for (int k = 0; k < line.length(); k++)
+                    buffer.put((byte) line.charAt(k));
+                buffered++;
+            }
+            flush(channel, buffer);
+            analysed.addAndGet(buffered);
+        } catch (IOException | InterruptedException e) {
+            failure = e;
+            results.clear();
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,373 @@
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Reference board engine using the original 8 x 8 char array representation
+ * where 'w' represents the white player, 'b' the black player and 'e' an empty
+ * space. Moves are found by scanning around every opponent disc one direction
+ * at a time. It is slow, but simple enough to check other engines against.
+ */
+public class ArrayBoard implements Board {
+    private char[][] board = new char[8][8];
+
+    public ArrayBoard() {
+        reset();
+    }
+
+    public ArrayBoard(char[][] board) {
+        for (int i = 0; i < 8; i++)
+            this.board[i] = board[i].clone();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < board[0].length; i++) {
+            for (int j = 0; j < board[0].length; j++) {
+                board[i][j] = 'e';
+            }
+        }
+        board[3][3] = 'w';
+        board[4][4] = 'w';
+        board[3][4] = 'b';
+        board[4][3] = 'b';
+    }
+
+    @Override
+    public char get(int i, int j) {
+        return board[i][j];
+    }
+
+    @Override
+    public long getDiscs(char player) {
+        long discs = 0;
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                if (board[i][j] == player)
+                    discs |= 1L << (8 * i + j);
+            }
+        }
+        return discs;
+    }
+
+    @Override
+    public int count(char player) {
+        int count = 0;
+        for (char[] row : board) {
+            for (char space : row) {
+                if (space == player)
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getMoves(char player) {
+        long moves = 0;
+        for (ArrayList<Pair> move : generateMoves(player))
+            moves |= 1L << square(move.get(0));
+        return moves;
+    }
+
+    @Override
+    public int getMoves(char player, MoveList list) {
+        list.clear();
+        for (long moves = getMoves(player); moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            list.add(square, getFlips(player, square));
+        }
+        return list.size();
+    }
+
+    @Override
+    public int getMobility(char player) {
+        return Long.bitCount(getMoves(player));
+    }
+
+    @Override
+    public long getHash() {
+        return Zobrist.hash(this); // recomputed each time, this engine is only a reference
+    }
+
+    @Override
+    public long getFlips(char player, int square) {
+        long flips = 0;
+        for (ArrayList<Pair> move : generateMoves(player)) {
+            if (square(move.get(0)) == square) {
+                for (int k = 1; k < move.size(); k++)
+                    flips |= 1L << square(move.get(k));
+            }
+        }
+        return flips;
+    }
+
+    @Override
+    public long play(char player, int square) {
+        long flips = getFlips(player, square);
+        play(player, square, flips);
+        return flips;
+    }
+
+    @Override
+    public void play(char player, int square, long flips) {
+        for (int k = 0; k < 64; k++) {
+            if ((flips & (1L << k)) != 0)
+                board[k / 8][k % 8] = player;
+        }
+        board[square / 8][square % 8] = player;
+    }
+
+    @Override
+    public void undo(char player, int square, long flips) {
+        char opponent = player == 'w' ? 'b' : 'w';
+        for (int k = 0; k < 64; k++) {
+            if ((flips & (1L << k)) != 0)
+                board[k / 8][k % 8] = opponent;
+        }
+        board[square / 8][square % 8] = 'e';
+    }
+
+    @Override
+    public Board copy() {
+        return new ArrayBoard(board);
+    }
+
+    @Override
+    public char[][] toArray() {
+        return new ArrayBoard(board).board;
+    }
+
+    private static int square(Pair pair) {
+        return pair.getSquare();
+    }
+
+    /**
+     * Generate allowable moves for player to make. Players may place their piece
+     * in any position such that a tile ends up flipped.
+     *
+     * @return one list per move and direction, where the first index is the
+     *         placed move and the following indices are the tiles to be flipped
+     */
+    public ArrayList<ArrayList<Pair>> generateMoves(char player) {
+        ArrayList<ArrayList<Pair>> retList = new ArrayList<ArrayList<Pair>>();
+        char opponent = 'o';
+        if (player == 'w') {
+            opponent = 'b';
+        } else if (player == 'b') {
+            opponent = 'w';
+        } else
+            System.err.println("Bad Player Char");
+        for (int i = 0; i < board[0].length; i++) {
+            for (int j = 0; j < board[0].length; j++) {
+                if (board[i][j] == opponent) { // Possible moves occur around opponent
+                    checkSpaceMoves(i, j, retList, player, opponent);
+                }
+            }
+        }
+        retList.removeAll(Collections.singleton(null)); // remove generated null items
+        return retList;
+    }
+
+    /**
+     * Check around specified space and add any allowable moves to retList This
+     * method essentially just checks if the surround spaces are allowable and uses
+     * helper methods to do the heavy lifting The "check" family of methods checks
+     * if there is a corresponding player tile after a chain of opponent tiles.
+     *
+     * @param i
+     *            i index
+     * @param j
+     *            j index
+     * @param retList
+     *            The return list will indicate all possible moves for a player,
+     *            particularly, in one direction. So there will be many of the same
+     *            space in the return list if the space affects multiple directions.
+     */
+    private void checkSpaceMoves(int i, int j, ArrayList<ArrayList<Pair>> retList, char player, char opponent) {
+        if (i != 0) {
+            retList.add(checkU(i, j, player, opponent));
+            if (j != 0) {
+                retList.add(checkUL(i, j, player, opponent));
+                retList.add(checkL(i, j, player, opponent));
+            }
+            if (j != 7) {
+                retList.add(checkUR(i, j, player, opponent));
+                retList.add(checkR(i, j, player, opponent));
+            }
+        }
+        if (i != 7) {
+            retList.add(checkD(i, j, player, opponent));
+            if (j != 0) {
+                retList.add(checkDL(i, j, player, opponent));
+            }
+            if (j != 7) {
+                retList.add(checkDR(i, j, player, opponent));
+            }
+        }
+        // Next 2 are special cases not covered above
+        if (i == 0 && j != 0)
+            retList.add(checkL(i, j, player, opponent));
+        if (i == 0 && j != 7)
+            retList.add(checkR(i, j, player, opponent));
+    }
+
+    /**
+     * Check from top to bottom if a move can be made and what the resulting move
+     * does
+     *
+     * @return an ArrayList where the first index is the placed move and the
+     *         following indices are the tiles to be flipped Returns null if the
+     *         move is invalid.
+     */
+    private ArrayList<Pair> checkU(int i, int j, char player, char opponent) {
+        if (board[i - 1][j] == 'e') {
+            ArrayList<Pair> retList = new ArrayList<Pair>();
+            retList.add(Pair.of(i - 1, j)); // move
+            retList.add(Pair.of(i, j));
+            // begin below current space and go down
+            for (int k = i + 1; k < 8; k++) {
+                if (board[k][j] == opponent)
+                    retList.add(Pair.of(k, j));
+                else if (board[k][j] == player)
+                    return retList;
+                else
+                    return null;
+            }
+        }
+        return null; // null indicates this is not a viable move
+    }
+
+    private ArrayList<Pair> checkD(int i, int j, char player, char opponent) {
+        if (board[i + 1][j] == 'e') {
+            ArrayList<Pair> retList = new ArrayList<Pair>();
+            retList.add(Pair.of(i + 1, j)); // move
+            retList.add(Pair.of(i, j));
+            // begin above current space and go up
+            for (int k = i - 1; k >= 0; k--) {
+                if (board[k][j] == opponent)
+                    retList.add(Pair.of(k, j));
+                else if (board[k][j] == player)
+                    return retList;
+                else
+                    return null;
+            }
+        }
+        return null; // null indicates this is not a viable move
+    }
+
+    private ArrayList<Pair> checkR(int i, int j, char player, char opponent) {
+        if (board[i][j + 1] == 'e') {
+            ArrayList<Pair> retList = new ArrayList<Pair>();
+            retList.add(Pair.of(i, j + 1)); // move
+            retList.add(Pair.of(i, j));
+            // go left of current space
+            for (int k = j - 1; k >= 0; k--) {
+                if (board[i][k] == opponent)
+                    retList.add(Pair.of(i, k));
+                else if (board[i][k] == player)
+                    return retList;
+                else
+                    return null;
+            }
+        }
+        return null; // null indicates this is not a viable move
+    }
+
+    private ArrayList<Pair> checkL(int i, int j, char player, char opponent) {
+        if (board[i][j - 1] == 'e') {
+            ArrayList<Pair> retList = new ArrayList<Pair>();
+            retList.add(Pair.of(i, j - 1)); // move
+            retList.add(Pair.of(i, j));
+            // go right of current space
+            for (int k = j + 1; k < 8; k++) {
+                if (board[i][k] == opponent)
+                    retList.add(Pair.of(i, k));
+                else if (board[i][k] == player)
+                    return retList;
+                else
+                    return null;
+            }
+        }
+        return null; // null indicates this is not a viable move
+    }
+
+    private ArrayList<Pair> checkUR(int i, int j, char player, char opponent) {
+        if (board[i - 1][j + 1] == 'e') {
+            ArrayList<Pair> retList = new ArrayList<Pair>();
+            retList.add(Pair.of(i - 1, j + 1)); // move
+            retList.add(Pair.of(i, j));
+            // go down-left of current space
+            int l = j - 1;
+            for (int k = i + 1; k < 8 && l >= 0; k++) {
+                if (board[k][l] == opponent)
+                    retList.add(Pair.of(k, l));
+                else if (board[k][l] == player)
+                    return retList;
+                else
+                    return null;
+                l--;
+            }
+        }
+        return null; // null indicates this is not a viable move
+    }
+
+    private ArrayList<Pair> checkUL(int i, int j, char player, char opponent) {
+        if (board[i - 1][j - 1] == 'e') {
+            ArrayList<Pair> retList = new ArrayList<Pair>();
+            retList.add(Pair.of(i - 1, j - 1)); // move
+            retList.add(Pair.of(i, j));
+            // go down-right of current space
+            int l = j + 1;
+            for (int k = i + 1; k < 8 && l < 8; k++) {
+                if (board[k][l] == opponent)
+                    retList.add(Pair.of(k, l));
+                else if (board[k][l] == player)
+                    return retList;
+                else
+                    return null;
+                l++;
+            }
+        }
+        return null; // null indicates this is not a viable move
+    }
+
+    private ArrayList<Pair> checkDL(int i, int j, char player, char opponent) {
+        if (board[i + 1][j - 1] == 'e') {
+            ArrayList<Pair> retList = new ArrayList<Pair>();
+            retList.add(Pair.of(i + 1, j - 1)); // move
+            retList.add(Pair.of(i, j));
+            // go up-right of current space
+            int l = j + 1;
+            for (int k = i - 1; k >= 0 && l < 8; k--) {
+                if (board[k][l] == opponent)
+                    retList.add(Pair.of(k, l));
+                else if (board[k][l] == player)
+                    return retList;
+                else
+                    return null;
+                l++;
+            }
+        }
+        return null; // null indicates this is not a viable move
+    }
+
+    private ArrayList<Pair> checkDR(int i, int j, char player, char opponent) {
+        if (board[i + 1][j + 1] == 'e') {
+            ArrayList<Pair> retList = new ArrayList<Pair>();
+            retList.add(Pair.of(i + 1, j + 1)); // move
+            retList.add(Pair.of(i, j));
+            // go up-left of current space
+            int l = j - 1;
+            for (int k = i - 1; k >= 0 && l >= 0; k--) {
+                if (board[k][l] == opponent)
+                    retList.add(Pair.of(k, l));
+                else if (board[k][l] == player)
+                    return retList;
+                else
+                    return null;
+                l--;
+            }
+        }
+        return null; // null indicates this is not a viable move
+    }
+}
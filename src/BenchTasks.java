@@ -0,0 +1,121 @@
+import java.util.Random;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * The work measured by the JMH benchmarks in jmh/. JMH refuses benchmark
+ * classes in the default package, and classes in a named package cannot refer
+ * to the default package, so the benchmarks look this class up by name once
+ * and then call the plain functional interfaces it hands out. Each task runs on
+ * its own board and AIs, so tasks for different threads never share state; the
+ * AIs do not use the process-wide EvalCache, which would otherwise stay warm
+ * across iterations and turn evaluation into cache lookups.
+ */
+public class BenchTasks {
+    private static final int SUITE_SIZE = 16;
+    private static final long SUITE_SEED = 20180418;
+
+    /**
+     * Leaf count of the move tree from the start position, passes included
+     *
+     * @param board
+     *            BitBoard or ArrayBoard
+     */
+    public static LongSupplier perft(String board, int depth) {
+        Board start = board.equals("ArrayBoard") ? new ArrayBoard() : new BitBoard();
+        Perft perft = new Perft();
+        return () -> perft.count(start, 'b', depth);
+    }
+
+    /**
+     * One call of the heuristic on every position of the suite
+     *
+     * @return supplier of the summed values
+     */
+    public static IntSupplier evaluate(int select) {
+        return evaluate(select, null);
+    }
+
+    /**
+     * As evaluate, but through an EvalCache of the task's own, so after the
+     * first call every value is a cache hit: measures the cache's lookup cost
+     * rather than the heuristic's
+     */
+    public static IntSupplier evaluateCached(int select) {
+        return evaluate(select, new EvalCache(1024 * 1024));
+    }
+
+    private static IntSupplier evaluate(int select, EvalCache cache) {
+        Board[] boards = suite();
+        AI ai = new AI('b', null, select);
+        ai.setEvalCache(cache);
+        return () -> {
+            int sum = 0;
+            for (Board board : boards)
+                sum += ai.evaluate(board, 'b');
+            return sum;
+        };
+    }
+
+    /**
+     * A fixed-depth search of every position of the suite, each starting from
+     * an empty transposition table, without the endgame solver and without an
+     * evaluation cache
+     *
+     * @return supplier of the nodes searched
+     */
+    public static LongSupplier search(int select, int depth) {
+        Board[] boards = suite();
+        char[] players = new char[boards.length];
+        for (int p = 0; p < boards.length; p++)
+            players[p] = (p & 1) == 0 ? 'b' : 'w';
+        AI[] ais = new AI[boards.length];
+        for (int p = 0; p < boards.length; p++) {
+            ais[p] = new AI(players[p], null, select);
+            ais[p].setDepth(depth);
+            ais[p].setEndgameEmpties(0);
+            ais[p].setEvalCache(null);
+        }
+        return () -> {
+            long nodes = 0;
+            for (int p = 0; p < boards.length; p++) {
+                ais[p].clearHash();
+                ais[p].getMove(boards[p]);
+                nodes += ais[p].getNodes();
+            }
+            return nodes;
+        };
+    }
+
+    /**
+     * The standard position suite: positions from seeded random games, every
+     * other one with white to move, all with moves for the side to move
+     */
+    static Board[] suite() {
+        Random random = new Random(SUITE_SEED);
+        Board[] boards = new Board[SUITE_SIZE];
+        for (int p = 0; p < SUITE_SIZE; p++) {
+            char want = (p & 1) == 0 ? 'b' : 'w';
+            Board board;
+            do {
+                board = new BitBoard();
+                char player = 'b';
+                int plies = 2 * (5 + random.nextInt(15)) + (want == 'w' ? 1 : 0);
+                for (int ply = 0; ply < plies; ply++) {
+                    long moves = board.getMoves(player);
+                    if (moves == 0)
+                        break;
+                    int n = random.nextInt(Long.bitCount(moves));
+                    for (int k = 0; k < n; k++)
+                        moves &= moves - 1;
+                    board.play(player, Long.numberOfTrailingZeros(moves));
+                    player = player == 'w' ? 'b' : 'w';
+                }
+                if (player != want)
+                    board = null;
+            } while (board == null || board.getMoves(want) == 0);
+            boards[p] = board;
+        }
+        return boards;
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Board engine that stores each colour as a 64-bit mask, bit 8 * i + j being
+ * the space at row i, column j. Moves and flips are generated for all squares
+ * at once by shifting the player's discs across runs of opponent discs,
+ * instead of scanning the board one space at a time.
+ */
+public class BitBoard implements Board {
+    private static final long NOT_A = 0xFEFEFEFEFEFEFEFEL; // everything but column 0
+    private static final long NOT_H = 0x7F7F7F7F7F7F7F7FL; // everything but column 7
+    private static final long ALL = 0xFFFFFFFFFFFFFFFFL;
+
+    // Directions 0-3 shift left (towards higher indices), 4-7 shift right.
+    // The mask removes discs that wrapped around to the other side of the board.
+    private static final int[] SHIFT = { 1, 9, 8, 7, 1, 9, 8, 7 };
+    private static final long[] MASK = { NOT_A, NOT_A, ALL, NOT_H, NOT_H, NOT_H, ALL, NOT_A };
+
+    private long black;
+    private long white;
+    private long hash; // kept up to date by play and undo
+
+    public BitBoard() {
+        reset();
+    }
+
+    public BitBoard(long black, long white) {
+        this.black = black;
+        this.white = white;
+        hash = Zobrist.hash(black, white);
+    }
+
+    private BitBoard(long black, long white, long hash) {
+        this.black = black;
+        this.white = white;
+        this.hash = hash;
+    }
+
+    @Override
+    public void reset() {
+        white = bit(3, 3) | bit(4, 4);
+        black = bit(3, 4) | bit(4, 3);
+        hash = Zobrist.hash(black, white);
+    }
+
+    @Override
+    public char get(int i, int j) {
+        long b = bit(i, j);
+        if ((black & b) != 0)
+            return 'b';
+        if ((white & b) != 0)
+            return 'w';
+        return 'e';
+    }
+
+    @Override
+    public long getDiscs(char player) {
+        return player == 'b' ? black : white;
+    }
+
+    @Override
+    public int count(char player) {
+        return Long.bitCount(getDiscs(player));
+    }
+
+    @Override
+    public long getMoves(char player) {
+        if (player == 'b')
+            return moves(black, white);
+        return moves(white, black);
+    }
+
+    @Override
+    public int getMoves(char player, MoveList list) {
+        long own = getDiscs(player), opp = player == 'b' ? white : black;
+        list.clear();
+        for (long moves = moves(own, opp); moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            list.add(square, flips(own, opp, square));
+        }
+        return list.size();
+    }
+
+    @Override
+    public int getMobility(char player) {
+        return Long.bitCount(getMoves(player));
+    }
+
+    @Override
+    public long getHash() {
+        return hash;
+    }
+
+    @Override
+    public long getFlips(char player, int square) {
+        if (player == 'b')
+            return flips(black, white, square);
+        return flips(white, black, square);
+    }
+
+    @Override
+    public long play(char player, int square) {
+        long flipped = getFlips(player, square);
+        play(player, square, flipped);
+        return flipped;
+    }
+
+    @Override
+    public void play(char player, int square, long flips) {
+        long placed = 1L << square;
+        if (player == 'b') {
+            black |= flips | placed;
+            white &= ~flips;
+        } else {
+            white |= flips | placed;
+            black &= ~flips;
+        }
+        hash ^= Zobrist.move(player, square, flips);
+    }
+
+    @Override
+    public void undo(char player, int square, long flips) {
+        long placed = 1L << square;
+        if (player == 'b') {
+            black &= ~(flips | placed);
+            white |= flips;
+        } else {
+            white &= ~(flips | placed);
+            black |= flips;
+        }
+        hash ^= Zobrist.move(player, square, flips);
+    }
+
+    @Override
+    public Board copy() {
+        return new BitBoard(black, white, hash);
+    }
+
+    @Override
+    public char[][] toArray() {
+        char[][] board = new char[8][8];
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++)
+                board[i][j] = get(i, j);
+        }
+        return board;
+    }
+
+    /**
+     * Shift every disc in x one step in direction dir, dropping any disc that
+     * would leave the board.
+     */
+    static long shift(long x, int dir) {
+        if (dir < 4)
+            return (x << SHIFT[dir]) & MASK[dir];
+        return (x >>> SHIFT[dir]) & MASK[dir];
+    }
+
+    /**
+     * Legal moves for the side owning own. In each direction the own discs are
+     * flooded across adjacent opponent discs (at most 6 in a row), and any empty
+     * square one step past such a run is a move.
+     *
+     * @return bit mask of legal squares
+     */
+    static long moves(long own, long opp) {
+        long empty = ~(own | opp);
+        long moves = 0;
+        for (int dir = 0; dir < 8; dir++) {
+            long run = shift(own, dir) & opp;
+            run |= shift(run, dir) & opp;
+            run |= shift(run, dir) & opp;
+            run |= shift(run, dir) & opp;
+            run |= shift(run, dir) & opp;
+            run |= shift(run, dir) & opp;
+            moves |= shift(run, dir) & empty;
+        }
+        return moves;
+    }
+
+    /**
+     * Discs flipped by the side owning own placing on square. Walks out from the
+     * square in each direction and keeps the run of opponent discs only if it is
+     * capped by an own disc.
+     *
+     * @return bit mask of flipped discs, 0 if the move is not allowed
+     */
+    static long flips(long own, long opp, int square) {
+        long placed = 1L << square;
+        if (((own | opp) & placed) != 0)
+            return 0;
+        long flipped = 0;
+        for (int dir = 0; dir < 8; dir++) {
+            long run = 0;
+            long x = shift(placed, dir);
+            while ((x & opp) != 0) {
+                run |= x;
+                x = shift(x, dir);
+            }
+            if ((x & own) != 0)
+                flipped |= run;
+        }
+        return flipped;
+    }
+
+    static long bit(int i, int j) {
+        return 1L << (8 * i + j);
+    }
+}
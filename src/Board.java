@@ -0,0 +1,97 @@
+/**
+ * Board engine interface shared by Game and AI. A board only knows where the
+ * discs are; whose turn it is stays with the caller. Players are the same 'w'
+ * and 'b' chars used throughout, and squares are indexed 8 * i + j so that a
+ * set of squares can be passed around as a single long bit mask.
+ */
+public interface Board {
+
+    /**
+     * Set/Reset the board to the standard starting position
+     */
+    void reset();
+
+    /**
+     * @return 'w', 'b' or 'e' for the space at row i, column j
+     */
+    char get(int i, int j);
+
+    /**
+     * @return bit mask of every disc belonging to player
+     */
+    long getDiscs(char player);
+
+    /**
+     * @return number of discs belonging to player
+     */
+    int count(char player);
+
+    /**
+     * Generate allowable moves for player to make.
+     *
+     * @return bit mask of every square player may place a disc on
+     */
+    long getMoves(char player);
+
+    /**
+     * Fill list with player's moves, each square once with its flips
+     *
+     * @return number of moves
+     */
+    int getMoves(char player, MoveList list);
+
+    /**
+     * @return number of squares player may place a disc on
+     */
+    int getMobility(char player);
+
+    /**
+     * @return Zobrist hash of the discs on the board, not including whose turn
+     *         it is (see Zobrist.key)
+     */
+    long getHash();
+
+    /**
+     * @param square
+     *            8 * i + j index of the placed disc
+     * @return bit mask of the discs flipped by player placing on square, 0 if
+     *         the move is not allowed
+     */
+    long getFlips(char player, int square);
+
+    /**
+     * Place a disc for player on square and flip the discs between.
+     *
+     * @return bit mask of the flipped discs
+     */
+    long play(char player, int square);
+
+    /**
+     * Place a disc for player on square when the flips are already known, for
+     * instance from a MoveList
+     *
+     * @param flips
+     *            the discs the move flips, as given by getFlips
+     */
+    void play(char player, int square, long flips);
+
+    /**
+     * Take back a move made by play. The square and flip mask are all that is
+     * needed to restore the previous position, so searches can make and unmake
+     * moves in place instead of copying the board.
+     *
+     * @param flips
+     *            the mask returned by play
+     */
+    void undo(char player, int square, long flips);
+
+    /**
+     * @return an independent copy of this board using the same engine
+     */
+    Board copy();
+
+    /**
+     * @return the board as a fresh 8 x 8 char array (for display)
+     */
+    char[][] toArray();
+}
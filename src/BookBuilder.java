@@ -0,0 +1,79 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Builds or extends an opening book from self-play. Each game plays the AI
+ * against itself; every position within the first plies of a game that is not
+ * already in the book at the requested depth is searched and its best move is
+ * added. To cover more than one line, a game sometimes plays a random legal
+ * move instead of the best one. An existing book file is read first and
+ * rewritten with the new entries merged in.
+ *
+ * Usage: java BookBuilder [book file] [games] [plies] [depth] [heuristic] [seed]
+ */
+public class BookBuilder {
+    private static final double RANDOM_MOVE_CHANCE = 0.3;
+
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "othello.book");
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int plies = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int select = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+
+        TreeMap<Long, Long> entries = Files.exists(path) ? OpeningBook.read(path) : new TreeMap<>();
+        int existing = entries.size();
+        Random random = new Random(seed);
+        AI black = new AI('b', null, select);
+        AI white = new AI('w', null, select);
+        for (AI ai : new AI[] { black, white }) {
+            ai.setDepth(depth);
+            ai.setEndgameEmpties(0);
+        }
+
+        for (int game = 0; game < games; game++) {
+            Board board = new BitBoard();
+            char player = 'b';
+            for (int ply = 0; ply < plies; ply++) {
+                long moves = board.getMoves(player);
+                if (moves == 0) {
+                    player = player == 'w' ? 'b' : 'w';
+                    moves = board.getMoves(player);
+                    if (moves == 0)
+                        break;
+                }
+                long blackDiscs = board.getDiscs('b'), whiteDiscs = board.getDiscs('w');
+                int symmetry = OpeningBook.symmetry(blackDiscs, whiteDiscs, player);
+                long key = OpeningBook.key(blackDiscs, whiteDiscs, player, symmetry);
+                Long entry = entries.get(key);
+                int move;
+                if (entry == null || OpeningBook.entryDepth(entry) < depth) {
+                    AI ai = player == 'b' ? black : white;
+                    Pair choice = ai.getMove(board);
+                    move = choice.getSquare();
+                    int score = ai.getHeuristicMap().get(choice);
+                    int stored = Long.numberOfTrailingZeros(OpeningBook.transform(1L << move, symmetry));
+                    entries.put(key, OpeningBook.entry(score, stored, depth));
+                } else {
+                    move = Long.numberOfTrailingZeros(
+                            OpeningBook.inverse(1L << OpeningBook.entryMove(entry), symmetry));
+                }
+                if (random.nextDouble() < RANDOM_MOVE_CHANCE) {
+                    int n = random.nextInt(Long.bitCount(moves));
+                    for (int k = 0; k < n; k++)
+                        moves &= moves - 1;
+                    move = Long.numberOfTrailingZeros(moves);
+                }
+                board.play(player, move);
+                player = player == 'w' ? 'b' : 'w';
+            }
+        }
+        OpeningBook.write(path, entries);
+        System.out.println(path + ": " + entries.size() + " positions (" + (entries.size() - existing) + " new)");
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs session commands on a fixed pool of worker threads, so the number of
+ * searches running at once is bounded by the workers however many sessions
+ * there are. Each session's commands run in the order they arrived and never
+ * two at a time. Sessions take turns fairly: a worker runs one command of a
+ * session and then puts the session at the back of the pool's queue if it has
+ * more, so a client that sends a long stream of commands to one session
+ * cannot hold up the others.
+ */
+class Dispatcher {
+    private final ExecutorService workers;
+
+    Dispatcher(int threads) {
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Server worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue command behind the session's earlier ones
+     */
+    void submit(Session session, Runnable command) {
+        synchronized (session) {
+            session.pending.add(command);
+            if (session.scheduled)
+                return;
+            session.scheduled = true;
+        }
+        workers.execute(() -> runNext(session));
+    }
+
+    private void runNext(Session session) {
+        Runnable command;
+        synchronized (session) {
+            command = session.pending.poll();
+        }
+        try {
+            command.run();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        synchronized (session) {
+            if (session.pending.isEmpty()) {
+                session.scheduled = false;
+                return;
+            }
+        }
+        workers.execute(() -> runNext(session)); // back of the line
+    }
+
+    void shutdown() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,298 @@
+/**
+ * Exact endgame solver. Once few enough squares are empty the game can be
+ * searched to the end, so instead of a heuristic every line is scored by its
+ * final disc differential (empty squares go to the winner).
+ *
+ * The solver works on raw bit masks rather than a Board and keeps the empty
+ * squares in a linked list, so near the leaves it never scans the board.
+ * Moves are ordered fastest-first (fewest replies for the opponent) while many
+ * squares are empty, and by quadrant parity (squares in regions with an odd
+ * number of empties first) near the end. The exact score is found with
+ * narrow-window searches: a win/loss/draw search first, then null-window
+ * tests that halve the remaining range until it closes.
+ */
+public class EndgameSolver {
+    private static final int INFINITY = 65; // beyond any disc differential
+    private static final int FASTEST_FIRST_EMPTIES = 7; // below this, parity order on the empty list
+    private static final int HEAD = 64; // sentinel of the empty square list
+
+    // Corners first, X-squares last, roughly in order of how good the squares are
+    static final int[] SQUARE_ORDER = { 0, 7, 56, 63, 2, 5, 16, 23, 40, 47, 58, 61, 3, 4, 24, 31, 32,
+            39, 59, 60, 18, 21, 42, 45, 19, 20, 26, 29, 34, 37, 43, 44, 11, 12, 25, 30, 33, 38, 51, 52, 10, 13, 17,
+            22, 41, 46, 50, 53, 1, 6, 8, 15, 48, 55, 57, 62, 9, 14, 49, 54, 27, 28, 35, 36 };
+
+    private final int[] next = new int[65];
+    private final int[] prev = new int[65];
+    private final int[][] moveSquares = new int[65][64]; // move list per number of empties
+    private final long[][] moveFlips = new long[65][64];
+    private final int[] moveKeys = new int[64];
+    private int parity; // bit q set when quadrant q has an odd number of empties
+    private long deadline; // System.nanoTime() at which to stop, 0 for none
+    private volatile boolean stopped; // out of time or stopped from another thread
+    private long nodes;
+    private int score;
+    private int rootBest;
+
+    /**
+     * Solve position exactly with player to move. Does nothing useful after
+     * stop or a missed deadline until reset is called, so a stop from another
+     * thread is never lost between the caller's own checks and the solve.
+     *
+     * @param deadline
+     *            System.nanoTime() at which to give up, 0 for none
+     * @return the best square, -1 if player cannot move
+     */
+    public int solve(Board position, char player, long deadline) {
+        char opponent = player == 'w' ? 'b' : 'w';
+        long own = position.getDiscs(player);
+        long opp = position.getDiscs(opponent);
+        this.deadline = deadline;
+        nodes = 0;
+        int empties = setEmpties(~(own | opp));
+        int count = orderMoves(own, opp, BitBoard.moves(own, opp), empties);
+        if (count == 0)
+            return -1;
+
+        int lower = -64, upper = 64;
+        int best = moveSquares[empties][0];
+        // win/loss/draw first, then bisect whatever range is left
+        int alpha = -1, beta = 1;
+        while (lower < upper) {
+            int value = searchRoot(own, opp, alpha, beta, count, empties);
+            if (stopped)
+                return best;
+            if (value > alpha) {
+                best = rootBest; // proved to be worth at least value
+                lower = value;
+            }
+            if (value < beta)
+                upper = value;
+            if (lower >= upper)
+                break;
+            alpha = (lower + upper) >> 1;
+            beta = alpha + 1;
+        }
+        score = lower;
+        return best;
+    }
+
+    /**
+     * @return exact final disc differential for the side that was to move
+     */
+    public int getScore() {
+        return score;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Give up the solve in progress, from any thread
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Clear a stop or missed deadline before the next solve
+     */
+    public void reset() {
+        stopped = false;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    private int searchRoot(long own, long opp, int alpha, int beta, int count, int empties) {
+        int best = -INFINITY;
+        for (int k = 0; k < count; k++) {
+            int square = moveSquares[empties][k];
+            long flips = moveFlips[empties][k];
+            remove(square);
+            int value = -search(opp & ~flips, own | flips | (1L << square), -beta, -alpha, false, empties - 1);
+            restore(square);
+            if (stopped)
+                return best;
+            if (value > best) {
+                best = value;
+                rootBest = square;
+                if (value > alpha)
+                    alpha = value;
+                if (alpha >= beta)
+                    break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Negamax over final disc differential, own to move
+     *
+     * @param passed
+     *            the other side just passed, so if own cannot move either the
+     *            game is over
+     */
+    private int search(long own, long opp, int alpha, int beta, boolean passed, int empties) {
+        if ((++nodes & 4095) == 0 && deadline != 0 && System.nanoTime() > deadline)
+            stopped = true;
+        if (stopped)
+            return 0;
+        if (empties == 0)
+            return Long.bitCount(own) - Long.bitCount(opp);
+        if (empties == 1)
+            return lastMove(own, opp, next[HEAD]);
+        if (empties < FASTEST_FIRST_EMPTIES)
+            return searchParity(own, opp, alpha, beta, passed, empties);
+
+        int count = orderMoves(own, opp, BitBoard.moves(own, opp), empties);
+        if (count == 0) {
+            if (passed)
+                return finalScore(own, opp, empties);
+            return -search(opp, own, -beta, -alpha, true, empties);
+        }
+        int best = -INFINITY;
+        for (int k = 0; k < count; k++) {
+            int square = moveSquares[empties][k];
+            long flips = moveFlips[empties][k];
+            remove(square);
+            int value = -search(opp & ~flips, own | flips | (1L << square), -beta, -alpha, false, empties - 1);
+            restore(square);
+            if (value > best) {
+                best = value;
+                if (value > alpha)
+                    alpha = value;
+                if (alpha >= beta)
+                    break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Search for the last few empties. Moves come straight off the empty list:
+     * first the squares in quadrants with an odd number of empties, then the
+     * rest.
+     */
+    private int searchParity(long own, long opp, int alpha, int beta, boolean passed, int empties) {
+        int best = -INFINITY;
+        for (int odd = 1; odd >= 0; odd--) {
+            for (int square = next[HEAD]; square != HEAD; square = next[square]) {
+                if (((parity >> quadrant(square)) & 1) != odd)
+                    continue;
+                long flips = BitBoard.flips(own, opp, square);
+                if (flips == 0)
+                    continue;
+                remove(square);
+                int value = -search(opp & ~flips, own | flips | (1L << square), -beta, -alpha, false, empties - 1);
+                restore(square);
+                if (value > best) {
+                    best = value;
+                    if (value > alpha)
+                        alpha = value;
+                    if (alpha >= beta)
+                        return best;
+                }
+            }
+        }
+        if (best == -INFINITY) { // no moves
+            if (passed)
+                return finalScore(own, opp, empties);
+            return -search(opp, own, -beta, -alpha, true, empties);
+        }
+        return best;
+    }
+
+    /**
+     * Score the last empty square without any further search
+     */
+    private int lastMove(long own, long opp, int square) {
+        int diff = Long.bitCount(own) - Long.bitCount(opp);
+        long flips = BitBoard.flips(own, opp, square);
+        if (flips != 0)
+            return diff + 2 * Long.bitCount(flips) + 1;
+        flips = BitBoard.flips(opp, own, square);
+        if (flips != 0)
+            return diff - 2 * Long.bitCount(flips) - 1;
+        return finalScore(own, opp, 1);
+    }
+
+    private static int finalScore(long own, long opp, int empties) {
+        int diff = Long.bitCount(own) - Long.bitCount(opp);
+        if (diff > 0)
+            return diff + empties;
+        if (diff < 0)
+            return diff - empties;
+        return 0;
+    }
+
+    /**
+     * Fill the move list for this number of empties, sorted by how many replies
+     * each move leaves the opponent
+     *
+     * @return number of moves
+     */
+    private int orderMoves(long own, long opp, long moves, int empties) {
+        int[] squares = moveSquares[empties];
+        long[] flipList = moveFlips[empties];
+        int count = 0;
+        for (; moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            long flips = BitBoard.flips(own, opp, square);
+            int key = Long.bitCount(BitBoard.moves(opp & ~flips, own | flips | (1L << square)));
+            int k = count++;
+            for (; k > 0 && moveKeys[k - 1] > key; k--) { // insertion sort, lists are short
+                moveKeys[k] = moveKeys[k - 1];
+                squares[k] = squares[k - 1];
+                flipList[k] = flipList[k - 1];
+            }
+            moveKeys[k] = key;
+            squares[k] = square;
+            flipList[k] = flips;
+        }
+        return count;
+    }
+
+    /**
+     * Build the empty square list and quadrant parity
+     *
+     * @return number of empty squares
+     */
+    private int setEmpties(long empty) {
+        int last = HEAD;
+        int count = 0;
+        parity = 0;
+        for (int square : SQUARE_ORDER) {
+            if ((empty & (1L << square)) != 0) {
+                next[last] = square;
+                prev[square] = last;
+                last = square;
+                parity ^= 1 << quadrant(square);
+                count++;
+            }
+        }
+        next[last] = HEAD;
+        prev[HEAD] = last;
+        return count;
+    }
+
+    private void remove(int square) {
+        next[prev[square]] = next[square];
+        prev[next[square]] = prev[square];
+        parity ^= 1 << quadrant(square);
+    }
+
+    /**
+     * Undo remove, in reverse order of removal
+     */
+    private void restore(int square) {
+        next[prev[square]] = square;
+        prev[next[square]] = square;
+        parity ^= 1 << quadrant(square);
+    }
+
+    private static int quadrant(int square) {
+        return ((square >> 5) << 1) | ((square >> 2) & 1);
+    }
+}
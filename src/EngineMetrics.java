@@ -0,0 +1,160 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Totals over every move every AI in the process has made, kept in striped
+ * LongAdders so concurrent games never contend on a counter. The totals are
+ * registered as an MBean (othello:type=EngineMetrics) for jconsole or any
+ * other JMX client, and every move is also written as one line to the
+ * othello.search logger at FINE, off unless logging is configured for it.
+ */
+public class EngineMetrics implements EngineMetricsMBean {
+    static final Logger LOG = Logger.getLogger("othello.search");
+    private static final int PLIES = 64;
+    private static final EngineMetrics INSTANCE = register(new EngineMetrics());
+
+    private final LongAdder moves = new LongAdder(), nodes = new LongAdder(), evaluations = new LongAdder();
+    private final LongAdder tableProbes = new LongAdder(), tableHits = new LongAdder();
+    private final LongAdder nanos = new LongAdder(), depths = new LongAdder();
+    private final LongAdder[] cutoffs = new LongAdder[PLIES];
+    private volatile SearchMetrics last;
+
+    private EngineMetrics() {
+        for (int ply = 0; ply < PLIES; ply++)
+            cutoffs[ply] = new LongAdder();
+    }
+
+    private static EngineMetrics register(EngineMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                    new ObjectName("othello:type=EngineMetrics"));
+        } catch (JMException e) {
+            LOG.log(Level.WARNING, "Engine metrics are not available over JMX", e);
+        }
+        return metrics;
+    }
+
+    public static EngineMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Add a finished move to the totals and log it
+     */
+    static void record(SearchMetrics move) {
+        EngineMetrics totals = INSTANCE;
+        totals.moves.increment();
+        totals.nodes.add(move.getNodes());
+        totals.evaluations.add(move.getEvaluations());
+        totals.tableProbes.add(move.getTableProbes());
+        totals.tableHits.add(move.getTableHits());
+        totals.nanos.add(move.getNanos());
+        totals.depths.add(move.getDepth());
+        long[] counts = move.getCutoffs();
+        for (int ply = 0; ply < counts.length; ply++)
+            totals.cutoffs[ply].add(counts[ply]);
+        totals.last = move;
+        if (LOG.isLoggable(Level.FINE))
+            LOG.fine(move.toString());
+    }
+
+    @Override
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    @Override
+    public long getTableProbes() {
+        return tableProbes.sum();
+    }
+
+    @Override
+    public long getTableHits() {
+        return tableHits.sum();
+    }
+
+    @Override
+    public double getTableHitRate() {
+        long probes = getTableProbes();
+        return probes == 0 ? 0 : (double) getTableHits() / probes;
+    }
+
+    @Override
+    public long getSearchMillis() {
+        return nanos.sum() / 1000000;
+    }
+
+    @Override
+    public double getNodesPerSecond() {
+        long time = nanos.sum();
+        return time == 0 ? 0 : getNodes() * 1e9 / time;
+    }
+
+    @Override
+    public double getAverageDepth() {
+        long count = getMoves();
+        return count == 0 ? 0 : (double) depths.sum() / count;
+    }
+
+    @Override
+    public long[] getCutoffsByPly() {
+        long[] counts = new long[PLIES];
+        int plies = 0;
+        for (int ply = 0; ply < PLIES; ply++) {
+            counts[ply] = cutoffs[ply].sum();
+            if (counts[ply] != 0)
+                plies = ply + 1;
+        }
+        return Arrays.copyOf(counts, plies);
+    }
+
+    @Override
+    public double getEvalCacheHitRate() {
+        return EvalCache.shared().getHitRate();
+    }
+
+    @Override
+    public long getEvalCacheEvictions() {
+        return EvalCache.shared().getEvictions();
+    }
+
+    /**
+     * @return the log line of the most recent move, empty before the first
+     */
+    @Override
+    public String getLastMove() {
+        SearchMetrics move = last;
+        return move == null ? "" : move.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder adder : new LongAdder[] { moves, nodes, evaluations, tableProbes, tableHits, nanos, depths })
+            adder.reset();
+        for (LongAdder adder : cutoffs)
+            adder.reset();
+        last = null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d moves, %d nodes, %.0f nodes/s, average depth %.1f, table hit rate %.1f%%",
+                getMoves(), getNodes(), getNodesPerSecond(), getAverageDepth(), 100 * getTableHitRate());
+    }
+}
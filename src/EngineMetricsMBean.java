@@ -0,0 +1,32 @@
+/**
+ * JMX view of EngineMetrics, registered as othello:type=EngineMetrics
+ */
+public interface EngineMetricsMBean {
+    long getMoves();
+
+    long getNodes();
+
+    long getEvaluations();
+
+    long getTableProbes();
+
+    long getTableHits();
+
+    double getTableHitRate();
+
+    long getSearchMillis();
+
+    double getNodesPerSecond();
+
+    double getAverageDepth();
+
+    long[] getCutoffsByPly();
+
+    double getEvalCacheHitRate();
+
+    long getEvalCacheEvictions();
+
+    String getLastMove();
+
+    void reset();
+}
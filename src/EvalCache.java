@@ -0,0 +1,172 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of heuristic values shared by every AI in the process, so
+ * concurrent games that reach the same positions (common openings, the same
+ * lines searched from both sides) evaluate them once. Keys are a position's
+ * Zobrist hash mixed with the heuristic and the side it scores for; see key.
+ *
+ * The cache is sized from a byte budget and split into buckets of WAYS
+ * entries, rounded down to a power of two so the bucket is the low bits of
+ * the key. Each entry is a key and a data word next to each other in one long
+ * array, so a whole bucket is 64 bytes and a lookup touches one or two cache
+ * lines:
+ *
+ * data bits 0-31 value, 32 referenced, and in a bucket's first entry 33-34
+ * the clock hand
+ *
+ * A full bucket evicts by the clock algorithm: every hit marks its
+ * entry as referenced, and the bucket's hand clears marks until it reaches an
+ * unmarked entry to replace, so entries that keep being used survive. Buckets
+ * are guarded by STRIPES locks, bucket b by lock b % STRIPES, so threads only
+ * contend when they hit the same stripe at the same moment.
+ *
+ * Hits, misses and evictions are counted for the whole cache.
+ */
+public class EvalCache {
+    public static final long MISS = Long.MIN_VALUE; // get result when the key is absent
+    private static final int WAYS = 4;
+    private static final int STRIPES = 64;
+    private static final int ENTRY_BYTES = 16; // key and data
+    private static final long REFERENCED = 1L << 32;
+    private static final int HAND_SHIFT = 33;
+    private static final long DEFAULT_BYTES = 16L * 1024 * 1024;
+    private static EvalCache shared;
+
+    private final long[] entries; // key, data, key, data...; a key of 0 is an empty entry
+    private final int mask; // buckets - 1
+    private final Object[] locks = new Object[STRIPES];
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+
+    /**
+     * @param bytes
+     *            memory budget, at least one bucket is always allocated
+     */
+    public EvalCache(long bytes) {
+        long buckets = Math.max(1, bytes / (ENTRY_BYTES * WAYS));
+        int size = Integer.highestOneBit((int) Math.min(buckets, 1 << 26));
+        entries = new long[size * WAYS * 2];
+        mask = size - 1;
+        for (int i = 0; i < STRIPES; i++)
+            locks[i] = new Object();
+    }
+
+    /**
+     * @return the process-wide cache, 16 MB, that AIs use unless given another
+     */
+    public static synchronized EvalCache shared() {
+        if (shared == null)
+            shared = new EvalCache(DEFAULT_BYTES);
+        return shared;
+    }
+
+    /**
+     * Cache key of a position's value under a heuristic
+     *
+     * @param hash
+     *            Board.getHash of the position
+     * @param heuristic
+     *            heuristic number, as AI's select
+     * @param player
+     *            side the heuristic scores for
+     */
+    public static long key(long hash, int heuristic, char player) {
+        return hash ^ (2L * heuristic + (player == 'w' ? 1 : 0) + 1) * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * @return the cached value, MISS if there is none
+     */
+    public long get(long key) {
+        int bucket = (int) key & mask;
+        int base = bucket * WAYS * 2;
+        synchronized (locks[bucket % STRIPES]) {
+            for (int i = base; i < base + WAYS * 2; i += 2) {
+                if (entries[i] == key && key != 0) {
+                    entries[i + 1] |= REFERENCED;
+                    hits.increment();
+                    return (int) entries[i + 1];
+                }
+            }
+        }
+        misses.increment();
+        return MISS;
+    }
+
+    public void put(long key, int value) {
+        if (key == 0) // marks an empty entry
+            return;
+        int bucket = (int) key & mask;
+        int base = bucket * WAYS * 2;
+        synchronized (locks[bucket % STRIPES]) {
+            int free = -1;
+            for (int i = base; i < base + WAYS * 2; i += 2) {
+                if (entries[i] == key) { // another thread got here first
+                    entries[i + 1] = entries[i + 1] & ~0xFFFFFFFFL | (value & 0xFFFFFFFFL);
+                    return;
+                }
+                if (free < 0 && entries[i] == 0)
+                    free = i;
+            }
+            long hand = entries[base + 1] >>> HAND_SHIFT & 3;
+            if (free < 0) {
+                while ((entries[base + 2 * (int) hand + 1] & REFERENCED) != 0) { // second chance
+                    entries[base + 2 * (int) hand + 1] &= ~REFERENCED;
+                    hand = (hand + 1) % WAYS;
+                }
+                free = base + 2 * (int) hand;
+                hand = (hand + 1) % WAYS;
+                evictions.increment();
+            }
+            entries[free] = key;
+            entries[free + 1] = value & 0xFFFFFFFFL;
+            entries[base + 1] = entries[base + 1] & ~(3L << HAND_SHIFT) | hand << HAND_SHIFT;
+        }
+    }
+
+    public void clear() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            synchronized (locks[stripe]) {
+                for (int bucket = stripe; bucket <= mask; bucket += STRIPES)
+                    Arrays.fill(entries, bucket * WAYS * 2, (bucket + 1) * WAYS * 2, 0);
+            }
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return bytes actually allocated for entries, at most the budget
+     */
+    public long getCapacityBytes() {
+        return (long) entries.length * 8;
+    }
+
+    /**
+     * @return fraction of lookups that hit, 0 before the first lookup
+     */
+    public double getHitRate() {
+        long found = getHits(), total = found + getMisses();
+        return total == 0 ? 0 : (double) found / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d KB", getHits(), getMisses(),
+                100 * getHitRate(), getEvictions(), getCapacityBytes() / 1024);
+    }
+}
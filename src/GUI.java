@@ -5,6 +5,8 @@ import javax.swing.*;
 import javax.swing.plaf.LayerUI;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * GUI for Othello game Takes player inputs and displays game state
@@ -14,7 +16,8 @@ import java.util.HashMap;
  * @course Concepts in Artificial Intelligence
  */
 
-public class GUI extends JFrame implements MouseListener, ItemListener {
+public class GUI extends JFrame implements MouseListener, ItemListener, GameListener {
+    private static final int ANALYSIS_LINES = 4; // AI moves scored exactly while the values are shown
     private String player = "Black";
     private Game game;
     private JPanel gamePanel;
@@ -22,6 +25,7 @@ public class GUI extends JFrame implements MouseListener, ItemListener {
     private JMenuBar menuBar;
     private JCheckBoxMenuItem debugOnCB;
     private AI opponent;
+    private volatile CompletableFuture<Pair> thinking; // the AI's move being searched, set on the game thread
 
     public GUI(String title, Game game, AI opp) throws InterruptedException {
         super(title);
@@ -133,7 +137,7 @@ public class GUI extends JFrame implements MouseListener, ItemListener {
                     sq.setBlack();
                 else
                     sq.resetColor();
-                Pair tempPair = new Pair(i, j);
+                Pair tempPair = Pair.of(i, j);
                 if (heuristicMap.containsKey(tempPair)) {
                     sqOverlay.setText(heuristicMap.get(tempPair).toString()); }
                 else
@@ -143,43 +147,51 @@ public class GUI extends JFrame implements MouseListener, ItemListener {
     }
 
     /**
-     * Update state based on clicked square
-     *
-     * @param i
-     * @param j
-     * @throws InterruptedException
+     * Redraw the board and whose turn it is
      */
-    private void updateState(int i, int j) {
-        SwingUtilities.invokeLater(new Runnable() {
-            public void run() {
-                game.setChoice(i,j);
-                try {
-                    Thread.sleep(150);
-                } catch(InterruptedException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                }
-                player =game.getPlayer();
-                playerLabel.setText(player +"'s Turn.");
-
-                updateSquares(game.getBoard(),gamePanel);
-
-                repaint();
-                try
-                {
-                    Thread.sleep(100);
-                } catch(InterruptedException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                }
+    private void refresh() {
+        player = game.getPlayer();
+        playerLabel.setText(player + "'s Turn.");
+        updateSquares(game.getBoard(), gamePanel);
+        repaint();
+    }
 
-                // should AI control be here rather than Game?
-                if(player.equals(opponent.getPlayer())) {
-                    Pair aiChoice = opponent.getMove();
-                    updateState(aiChoice.getX(), aiChoice.getY());
-                }
-            }
-        });
+    /**
+     * Called from the game's thread whenever a player is to move. Redraws the
+     * board, and if it is the AI's turn starts its search in the background;
+     * the move is handed to the game when the search completes, so the window
+     * stays responsive in the meantime.
+     */
+    @Override
+    public void turnStarted(char player) {
+        SwingUtilities.invokeLater(this::refresh);
+        if (game.getPlayer().equals(opponent.getPlayer())) {
+            thinking = opponent.getMoveAsync(game.getPosition(),
+                    progress -> SwingUtilities.invokeLater(() -> showProgress(progress)));
+            thinking.thenAccept(choice -> game.setChoice(choice.getX(), choice.getY()));
+        }
+    }
+
+    private void showProgress(SearchProgress progress) {
+        if (thinking != null && !thinking.isDone()) {
+            playerLabel.setText(opponent.getPlayer() + " is thinking: " + progress);
+            if (!progress.getLines().isEmpty())
+                showLines(progress.getLines());
+        }
+    }
+
+    /**
+     * Show the exact values of the AI's best moves so far on their squares,
+     * clearing the others
+     */
+    private void showLines(List<AnalysisLine> lines) {
+        for (int k = 0; k < 64; k++)
+            ((OverlayLayerUI) ((JLayer) gamePanel.getComponent(k)).getUI()).setText("");
+        for (AnalysisLine line : lines) {
+            JLayer sqLayer = (JLayer) gamePanel.getComponent(line.getMove().getSquare());
+            ((OverlayLayerUI) sqLayer.getUI()).setText(Integer.toString(line.getScore()));
+        }
+        gamePanel.repaint();
     }
 
     /**
@@ -196,23 +208,26 @@ public class GUI extends JFrame implements MouseListener, ItemListener {
         }
     }
 
-    public void showEndDialog(String message) {
+    /**
+     * Show the result and ask whether to play again, waiting for the answer
+     */
+    @Override
+    public boolean gameOver(String message) {
+        boolean[] again = new boolean[1];
         try {
             SwingUtilities.invokeAndWait(new Runnable() {
                 public void run() {
+                    refresh();
                     int choice = JOptionPane.showOptionDialog(getSelf(), message, "Game Over", JOptionPane.DEFAULT_OPTION,
                             JOptionPane.PLAIN_MESSAGE, null, new String[]{"Play again", "Quit"}, null);
-                    if (choice == 0) {
-                        game.set();
-                        try {
-                            Thread.sleep(250); // make sure game has reset before update
-                            updateSquares(game.getBoard(), gamePanel);
-                        } catch (Exception e) { }
-                    } else if (choice == 1)
+                    if (choice == 0)
+                        again[0] = true;
+                    else if (choice == 1)
                         System.exit(0);
                 }
             });
         }catch(Exception e) {e.printStackTrace();}
+        return again[0];
     }
 
     @Override
@@ -239,7 +254,8 @@ public class GUI extends JFrame implements MouseListener, ItemListener {
     @Override
     public void mouseReleased(MouseEvent e) {
         Square sq = (Square) ((JLayer)e.getSource()).getView();
-        updateState(sq.getI(), sq.getJ());
+        if (!game.getPlayer().equals(opponent.getPlayer())) // the AI's turn is not the user's to take
+            game.setChoice(sq.getI(), sq.getJ());
         e.consume();
     }
 
@@ -247,6 +263,8 @@ public class GUI extends JFrame implements MouseListener, ItemListener {
     public void itemStateChanged(ItemEvent e) {
         Object source = e.getItemSelectable();
         if (source == debugOnCB) {
+            // exact values for the best moves instead of pruned bounds for all of them
+            opponent.setAnalysisLines(debugOnCB.isSelected() ? ANALYSIS_LINES : 1);
             toggleHeuristicVisibility();
         }
     }
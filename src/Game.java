@@ -1,11 +1,11 @@
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Game class handles everything game-related. Stores board state, generates
  * allowable moves, determines if end-game condition has been met, etc. Board
- * state is stored in an 8 x 8 char array where 'w' represents the white player
- * and 'b' represents the black player. 'e' represents an empty space.
+ * state is stored in a Board engine where 'w' represents the white player and
+ * 'b' represents the black player. 'e' represents an empty space.
  *
  * @author Jacob Caggese
  * @date 4/18/18
@@ -13,13 +13,25 @@ import java.util.Collections;
  *
  */
 public class Game {
-    private char[][] board = new char[8][8];
-    private char player;
-    private int x, y;
-    private boolean waiting;
-    private boolean canMove; // Can the player move? (End condition)
+    private Board board = new BitBoard();
+    private volatile char player;
+    private final BlockingQueue<Choice> choices = new LinkedBlockingQueue<>(); // moves handed in, oldest first
     private static Game game = null;
 
+    /**
+     * A square chosen by the player who was to move when it was chosen
+     */
+    private static class Choice {
+        final char player;
+        final int x, y;
+
+        Choice(char player, int x, int y) {
+            this.player = player;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
     /**
      * Only allows one instance of a game at a time.
      *
@@ -41,58 +53,48 @@ public class Game {
      * Set/Reset the board state
      */
     public void set() {
-        waiting = true;
-        canMove = false;
-        for (int i = 0; i < board[0].length; i++) {
-            for (int j = 0; j < board[0].length; j++) {
-                board[i][j] = 'e';
-            }
-        }
-        board[3][3] = 'w';
-        board[4][4] = 'w';
-        board[3][4] = 'b';
-        board[4][3] = 'b';
+        choices.clear();
+        board.reset();
         player = 'b'; // By convention, black starts
     }
 
     /**
-     * Method to start and control the game's flow
+     * Method to start and control the game's flow. Each turn is one of three
+     * cases: the player to move has moves, so the listener is told and the
+     * game blocks until a legal choice arrives through setChoice; the player
+     * has none but the opponent does, so the turn passes; or neither has, so
+     * the game is over and the listener decides whether to play again. Nothing
+     * sleeps or polls, so a choice is played as soon as it is made.
      *
-     * @param gui
+     * @param listener
+     *            told about turns, passes and the end of the game, on this
+     *            thread
      * @throws InterruptedException
+     *             if interrupted while waiting for a choice
      */
-    public void start(GUI gui) throws InterruptedException {
-        x = 0;
-        y = 0;
-        boolean turnFlag = false;
-        boolean noMoveFlag = false;
+    public void start(GameListener listener) throws InterruptedException {
         while (true) {
-            ArrayList<ArrayList<Pair>> moves = generateMoves(player, board);
-            if (canMove) {
-                noMoveFlag = false;
-                while (!turnFlag) {
-                    while (waiting) {
-                        Thread.sleep(100);
-                    } // waiting for input
-                    turnFlag = true; // Player has taken their turn
-                    if (!selectSpace(x, y, player, moves)) {
-                        turnFlag = false;
-                        waiting = true;
-                        System.err.println("This is not a valid space");
-                    }
-                }
-            } else { // if this player can't move
-                if (noMoveFlag) { // and the other player cant move
-                    gui.showEndDialog(endGame());
-                    player = 'w'; //if player chooses to play again, game will change player to black
-                }
-                else { // skip Player's turn
-                    noMoveFlag = true;
+            long moves = board.getMoves(player);
+            if (moves == 0) {
+                if (board.getMoves(player == 'w' ? 'b' : 'w') == 0) { // neither player can move
+                    if (!listener.gameOver(endGame()))
+                        return;
+                    set();
+                    continue;
                 }
+                listener.passed(player);
+                changePlayer();
+                continue;
+            }
+            listener.turnStarted(player);
+            while (true) { // waiting for input
+                Choice choice = choices.take();
+                if (choice.player != player) // made for an earlier turn
+                    continue;
+                if (selectSpace(choice.x, choice.y, player, moves))
+                    break;
+                System.err.println("This is not a valid space");
             }
-            canMove = false;
-            waiting = true;
-            turnFlag = false;
             changePlayer();
         }
     }
@@ -105,15 +107,13 @@ public class Game {
     }
 
     /**
-     * Player Input
+     * Player Input, for whoever is to move now. Safe to call from any thread.
      *
      * @param x
      * @param y
      */
     public void setChoice(int x, int y) {
-        this.x = x;
-        this.y = y;
-        waiting = false;
+        choices.add(new Choice(player, x, y));
     }
 
     public String getPlayer() {
@@ -128,287 +128,23 @@ public class Game {
      * info generated from move generation. If valid, the board state is changed
      * accordingly.
      *
+     * @param moves
+     *            Bit mask of allowable moves
      * @return True if the move succeeded
      */
-    private boolean selectSpace(int i, int j, char player, ArrayList<ArrayList<Pair>> moves) {
-        boolean flag = false;
-        for (ArrayList<Pair> pairs : moves) {
-            if (pairs != null) {
-                if (new Pair(i, j).equals(pairs.get(0))) {
-                    swap(player, pairs, board); // swap all between pieces
-                    pairs.clear();
-                    flag = true;
-                }
-            }
-        }
-        return flag;
-    }
-
-    /**
-     * Swap all board pieces contained within pair info
-     *
-     * @param player
-     * @param pairs
-     *            Places on board to swap
-     * @param board
-     *            What board to alter (for minimax state generation)
-     */
-    public void swap(char player, ArrayList<Pair> pairs, char[][] board) {
-        int size = pairs.size();
-        Pair pair = null;
-        for (int i = 0; i < size; i++) {
-            pair = pairs.get(i);
-            board[pair.getX()][pair.getY()] = player;
-        }
-    }
-
-    /**
-     * Generate allowable moves for player to make. This will be checked against
-     * when the player chooses their move. Players may place their piece in any
-     * position such that a tile ends up flipped.
-     *
-     * @param player
-     * @param board
-     *            For alternate board move generation (for minimax state generation)
-     */
-    public ArrayList<ArrayList<Pair>> generateMoves(char player, char[][] board) {
-        ArrayList<ArrayList<Pair>> retList = new ArrayList<ArrayList<Pair>>();
-        char opponent = 'o';
-        if (player == 'w') {
-            opponent = 'b';
-        } else if (player == 'b') {
-            opponent = 'w';
-        } else
-            System.err.println("Bad Player Char");
-        for (int i = 0; i < board[0].length; i++) {
-            for (int j = 0; j < board[0].length; j++) {
-                if (board[i][j] == opponent) { // Possible moves occur around opponent
-                    checkSpaceMoves(i, j, retList, player, opponent);
-                }
-            }
-        }
-        retList.removeAll(Collections.singleton(null)); // remove generated null items
-        return retList;
-    }
-
-    /**
-     * Check around specified space and add any allowable moves to retList This
-     * method essentially just checks if the surround spaces are allowable and uses
-     * helper methods to do the heavy lifting The "check" family of methods checks
-     * if there is a corresponding player tile after a chain of opponent tiles.
-     *
-     * @param i
-     *            i index
-     * @param j
-     *            j index
-     * @param retList
-     *            The return list will indicate all possible moves for a player,
-     *            particularly, in one direction. So there will be many of the same
-     *            space in the return list if the space affects multiple directions.
-     */
-    private void checkSpaceMoves(int i, int j, ArrayList<ArrayList<Pair>> retList, char player, char opponent) {
-        if (i != 0) {
-            retList.add(checkU(i, j, player, opponent));
-            if (j != 0) {
-                retList.add(checkUL(i, j, player, opponent));
-                retList.add(checkL(i, j, player, opponent));
-            }
-            if (j != 7) {
-                retList.add(checkUR(i, j, player, opponent));
-                retList.add(checkR(i, j, player, opponent));
-            }
-        }
-        if (i != 7) {
-            retList.add(checkD(i, j, player, opponent));
-            if (j != 0) {
-                retList.add(checkDL(i, j, player, opponent));
-            }
-            if (j != 7) {
-                retList.add(checkDR(i, j, player, opponent));
-            }
-        }
-        // Next 2 are special cases not covered above
-        if (i == 0 && j != 0)
-            retList.add(checkL(i, j, player, opponent));
-        if (i == 0 && j != 7)
-            retList.add(checkR(i, j, player, opponent));
-        for (ArrayList<Pair> move : retList) {
-            if (move != null)
-                canMove = true;
-        }
-    }
-
-    /**
-     * Check from top to bottom if a move can be made and what the resulting move
-     * does
-     *
-     * @return an ArrayList where the first index is the placed move and the
-     *         following indices are the tiles to be flipped Returns null if the
-     *         move is invalid.
-     */
-    private ArrayList<Pair> checkU(int i, int j, char player, char opponent) {
-        if (board[i - 1][j] == 'e') {
-            ArrayList<Pair> retList = new ArrayList<Pair>();
-            retList.add(new Pair(i - 1, j)); // move
-            retList.add(new Pair(i, j));
-            // begin below current space and go down
-            for (int k = i + 1; k < 8; k++) {
-                if (board[k][j] == opponent)
-                    retList.add(new Pair(k, j));
-                else if (board[k][j] == player)
-                    return retList;
-                else
-                    return null;
-            }
-        }
-        return null; // null indicates this is not a viable move
-    }
-
-    private ArrayList<Pair> checkD(int i, int j, char player, char opponent) {
-        if (board[i + 1][j] == 'e') {
-            ArrayList<Pair> retList = new ArrayList<Pair>();
-            retList.add(new Pair(i + 1, j)); // move
-            retList.add(new Pair(i, j));
-            // begin above current space and go up
-            for (int k = i - 1; k >= 0; k--) {
-                if (board[k][j] == opponent)
-                    retList.add(new Pair(k, j));
-                else if (board[k][j] == player)
-                    return retList;
-                else
-                    return null;
-            }
-        }
-        return null; // null indicates this is not a viable move
-    }
-
-    private ArrayList<Pair> checkR(int i, int j, char player, char opponent) {
-        if (board[i][j + 1] == 'e') {
-            ArrayList<Pair> retList = new ArrayList<Pair>();
-            retList.add(new Pair(i, j + 1)); // move
-            retList.add(new Pair(i, j));
-            // go left of current space
-            for (int k = j - 1; k >= 0; k--) {
-                if (board[i][k] == opponent)
-                    retList.add(new Pair(i, k));
-                else if (board[i][k] == player)
-                    return retList;
-                else
-                    return null;
-            }
-        }
-        return null; // null indicates this is not a viable move
-    }
-
-    private ArrayList<Pair> checkL(int i, int j, char player, char opponent) {
-        if (board[i][j - 1] == 'e') {
-            ArrayList<Pair> retList = new ArrayList<Pair>();
-            retList.add(new Pair(i, j - 1)); // move
-            retList.add(new Pair(i, j));
-            // go right of current space
-            for (int k = j + 1; k < 8; k++) {
-                if (board[i][k] == opponent)
-                    retList.add(new Pair(i, k));
-                else if (board[i][k] == player)
-                    return retList;
-                else
-                    return null;
-            }
-        }
-        return null; // null indicates this is not a viable move
-    }
-
-    private ArrayList<Pair> checkUR(int i, int j, char player, char opponent) {
-        if (board[i - 1][j + 1] == 'e') {
-            ArrayList<Pair> retList = new ArrayList<Pair>();
-            retList.add(new Pair(i - 1, j + 1)); // move
-            retList.add(new Pair(i, j));
-            // go down-left of current space
-            int l = j - 1;
-            for (int k = i + 1; k < 8 && l >= 0; k++) {
-                if (board[k][l] == opponent)
-                    retList.add(new Pair(k, l));
-                else if (board[k][l] == player)
-                    return retList;
-                else
-                    return null;
-                l--;
-            }
-        }
-        return null; // null indicates this is not a viable move
-    }
-
-    private ArrayList<Pair> checkUL(int i, int j, char player, char opponent) {
-        if (board[i - 1][j - 1] == 'e') {
-            ArrayList<Pair> retList = new ArrayList<Pair>();
-            retList.add(new Pair(i - 1, j - 1)); // move
-            retList.add(new Pair(i, j));
-            // go down-right of current space
-            int l = j + 1;
-            for (int k = i + 1; k < 8 && l < 8; k++) {
-                if (board[k][l] == opponent)
-                    retList.add(new Pair(k, l));
-                else if (board[k][l] == player)
-                    return retList;
-                else
-                    return null;
-                l++;
-            }
-        }
-        return null; // null indicates this is not a viable move
-    }
-
-    private ArrayList<Pair> checkDL(int i, int j, char player, char opponent) {
-        if (board[i + 1][j - 1] == 'e') {
-            ArrayList<Pair> retList = new ArrayList<Pair>();
-            retList.add(new Pair(i + 1, j - 1)); // move
-            retList.add(new Pair(i, j));
-            // go up-right of current space
-            int l = j + 1;
-            for (int k = i - 1; k >= 0 && l < 8; k--) {
-                if (board[k][l] == opponent)
-                    retList.add(new Pair(k, l));
-                else if (board[k][l] == player)
-                    return retList;
-                else
-                    return null;
-                l++;
-            }
-        }
-        return null; // null indicates this is not a viable move
-    }
-
-    private ArrayList<Pair> checkDR(int i, int j, char player, char opponent) {
-        if (board[i + 1][j + 1] == 'e') {
-            ArrayList<Pair> retList = new ArrayList<Pair>();
-            retList.add(new Pair(i + 1, j + 1)); // move
-            retList.add(new Pair(i, j));
-            // go up-left of current space
-            int l = j - 1;
-            for (int k = i - 1; k >= 0 && l >= 0; k--) {
-                if (board[k][l] == opponent)
-                    retList.add(new Pair(k, l));
-                else if (board[k][l] == player)
-                    return retList;
-                else
-                    return null;
-                l--;
-            }
-        }
-        return null; // null indicates this is not a viable move
+    private boolean selectSpace(int i, int j, char player, long moves) {
+        if (i < 0 || i > 7 || j < 0 || j > 7)
+            return false;
+        int square = 8 * i + j;
+        if ((moves & (1L << square)) == 0)
+            return false;
+        board.play(player, square);
+        return true;
     }
 
     private String endGame() {
-        int blackCount = 0, whiteCount = 0;
+        int blackCount = board.count('b'), whiteCount = board.count('w');
         String message = "";
-        for (char[] row : board) {
-            for (char space : row) {
-                if (space == 'b')
-                    blackCount++;
-                else if(space == 'w')
-                    whiteCount++;
-            }
-        }
         if (blackCount > whiteCount)
             message += "Black Wins!\n";
         else if (whiteCount > blackCount)
@@ -422,7 +158,7 @@ public class Game {
 
     public String toString() {
         String retStr = "\n";
-        for (char[] row : board) {
+        for (char[] row : board.toArray()) {
             for (char space : row)
                 retStr += space + " ";
             retStr += "\n";
@@ -430,7 +166,17 @@ public class Game {
         return retStr;
     }
 
+    /**
+     * @return a snapshot of the board as an 8 x 8 char array
+     */
     public char[][] getBoard() {
+        return board.toArray();
+    }
+
+    /**
+     * @return the live board engine, copy it before searching
+     */
+    public Board getPosition() {
         return board;
     }
 }
@@ -0,0 +1,27 @@
+/**
+ * Receives the flow of a Game. Every method is called on the thread running
+ * Game.start, which waits for it to return, so a listener that needs time (a
+ * search, a dialog) should hand the work to its own thread and answer through
+ * Game.setChoice.
+ */
+public interface GameListener {
+    /**
+     * player is to move and has at least one legal move
+     */
+    void turnStarted(char player);
+
+    /**
+     * player had no legal move, so the turn goes to the opponent
+     */
+    default void passed(char player) {
+    }
+
+    /**
+     * Neither player can move
+     *
+     * @param message
+     *            winner and disc counts
+     * @return true to reset the board and play again
+     */
+    boolean gameOver(String message);
+}
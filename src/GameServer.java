@@ -0,0 +1,231 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts many independent games in one process and serves them over a line
+ * based text protocol on the loopback interface. Every game is a Session with
+ * its own board and AIs; none of them uses the Game singleton. Each connection
+ * gets a thread that only reads commands, while the moves themselves are
+ * searched by the Dispatcher's bounded worker pool, so a few connections can
+ * drive hundreds of games at once.
+ *
+ * Commands, one per line, with squares as 8 * row + column:
+ *
+ * NEW [heuristic] [depth] starts a game, black to move, and answers OK id;
+ * the heuristic is 1 to 4, as AI's select.
+ * id MOVE square plays a move for the side to move. id GO lets the AI play
+ * the side to move. Both answer OK id square next, where next is the side to
+ * move after any pass (b or w), or end and black's final disc differential.
+ * id BOARD answers OK id with the 64 squares (b, w or -) and the side to move.
+ * id CLOSE ends the game. QUIT closes the connection.
+ *
+ * Errors answer ERR, the id if there is one, and a message. Replies for one
+ * game come in the order of its commands; replies for different games may
+ * interleave. Games a connection started end when it closes.
+ *
+ * Usage: java GameServer [port] [workers] [max sessions]
+ *
+ * By default the server takes as many sessions as fit in half the heap.
+ */
+public class GameServer {
+    private static final int MAX_DEPTH = 12; // deeper searches would tie up a worker for too long
+    private static final long SESSION_BYTES = 3L * 1024 * 1024; // two AIs with 1 MB tables, solvers and searchers
+
+    private final ServerSocket server;
+    private final Dispatcher dispatcher;
+    private final ExecutorService connections;
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicInteger open = new AtomicInteger(); // sessions started and not ended, at most maxSessions
+    private final int maxSessions;
+
+    /**
+     * Bind to port on the loopback interface
+     *
+     * @param port
+     *            0 for any free port
+     */
+    public GameServer(int port, int workers, int maxSessions) throws IOException {
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        dispatcher = new Dispatcher(workers);
+        connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Server connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxSessions = maxSessions;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7878;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int maxSessions = args.length > 2 ? Integer.parseInt(args[2]) : defaultMaxSessions();
+        GameServer server = new GameServer(port, workers, maxSessions);
+        System.out.println("Listening on " + server.getPort() + " with " + workers + " workers, at most "
+                + maxSessions + " sessions");
+        server.serve();
+    }
+
+    /**
+     * @return sessions whose AIs fit in half of the maximum heap, at least one
+     */
+    public static int defaultMaxSessions() {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 2 / SESSION_BYTES));
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Accept connections until the server is closed
+     */
+    public void serve() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                connections.execute(() -> handle(socket));
+            } catch (IOException e) {
+                if (!server.isClosed())
+                    e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stop accepting connections and let the commands already queued finish
+     */
+    public void close() throws IOException, InterruptedException {
+        server.close();
+        connections.shutdownNow();
+        dispatcher.shutdown();
+    }
+
+    /**
+     * Reply writer shared by the connection's thread and the workers
+     */
+    private static class Connection {
+        private final Writer out;
+
+        Connection(Socket socket) throws IOException {
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+        }
+
+        synchronized void send(String line) {
+            try {
+                out.write(line);
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                // the client is gone, its sessions end with the connection
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        List<Long> started = new ArrayList<>();
+        try (socket;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+            Connection connection = new Connection(socket);
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] words = line.trim().split("\\s+");
+                if (words[0].equalsIgnoreCase("QUIT"))
+                    break;
+                try {
+                    command(words, connection, started);
+                } catch (NumberFormatException e) {
+                    connection.send("ERR bad number in " + line.trim());
+                }
+            }
+        } catch (IOException e) {
+            // connection dropped
+        } finally {
+            for (long id : started)
+                end(id);
+        }
+    }
+
+    /**
+     * Forget session id and free its slot, if it is still open
+     */
+    private void end(long id) {
+        if (sessions.remove(id) != null)
+            open.decrementAndGet();
+    }
+
+    private void command(String[] words, Connection connection, List<Long> started) {
+        if (words[0].equalsIgnoreCase("NEW")) {
+            int select = words.length > 1 ? Integer.parseInt(words[1]) : 2;
+            int depth = words.length > 2 ? Integer.parseInt(words[2]) : 5;
+            if (select < 1 || select > 4) { // 5 needs network weights, which sessions do not have
+                connection.send("ERR heuristic must be 1 to 4");
+                return;
+            }
+            if (depth < 1 || depth > MAX_DEPTH) {
+                connection.send("ERR depth must be 1 to " + MAX_DEPTH);
+                return;
+            }
+            if (open.incrementAndGet() > maxSessions) { // reserve the slot before checking
+                open.decrementAndGet();
+                connection.send("ERR too many sessions");
+                return;
+            }
+            Session session = new Session(nextId.getAndIncrement(), select, depth);
+            sessions.put(session.id, session);
+            started.add(session.id);
+            connection.send("OK " + session.id);
+            return;
+        }
+        if (words.length < 2) {
+            connection.send("ERR unknown command " + words[0]);
+            return;
+        }
+        long id = Long.parseLong(words[0]);
+        Session session = sessions.get(id);
+        if (session == null) {
+            connection.send("ERR " + id + " no such session");
+            return;
+        }
+        switch (words[1].toUpperCase()) {
+            case "MOVE":
+                int square = words.length > 2 ? Integer.parseInt(words[2]) : -1;
+                dispatcher.submit(session, () -> connection.send(session.move(square)));
+                break;
+            case "GO":
+                dispatcher.submit(session, () -> connection.send(session.go()));
+                break;
+            case "BOARD":
+                dispatcher.submit(session, () -> connection.send(session.board()));
+                break;
+            case "CLOSE":
+                end(id);
+                started.remove(Long.valueOf(id));
+                dispatcher.submit(session, () -> connection.send("OK " + id));
+                break;
+            default:
+                connection.send("ERR " + id + " unknown command " + words[1]);
+        }
+    }
+}
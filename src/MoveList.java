@@ -0,0 +1,92 @@
+/**
+ * Reusable move buffer. Each legal move appears once, as its square index and
+ * the mask of discs it flips, in two primitive arrays sized for any position,
+ * so filling the list allocates nothing. A move from the list can be made with
+ * Board.play(player, square, flips) without finding its flips again.
+ */
+public class MoveList {
+    private final int[] squares = new int[64];
+    private final long[] flips = new long[64];
+    private final int[] keys = new int[64]; // ordering keys for sort
+    private int size;
+
+    /**
+     * Empty the list for refilling
+     */
+    void clear() {
+        size = 0;
+    }
+
+    void add(int square, long flipped) {
+        squares[size] = square;
+        flips[size++] = flipped;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 8 * i + j index of move k
+     */
+    public int getSquare(int k) {
+        return squares[k];
+    }
+
+    /**
+     * @return bit mask of the discs move k flips
+     */
+    public long getFlips(int k) {
+        return flips[k];
+    }
+
+    /**
+     * Set the ordering key of move k for sort, higher keys go first
+     */
+    public void setKey(int k, int key) {
+        keys[k] = key;
+    }
+
+    /**
+     * Sort the moves by key, highest first, keeping the order of equal keys
+     */
+    public void sort() {
+        for (int k = 1; k < size; k++) { // insertion sort, lists are short
+            int square = squares[k], key = keys[k];
+            long flipped = flips[k];
+            int j = k;
+            for (; j > 0 && keys[j - 1] < key; j--) {
+                squares[j] = squares[j - 1];
+                flips[j] = flips[j - 1];
+                keys[j] = keys[j - 1];
+            }
+            squares[j] = square;
+            flips[j] = flipped;
+            keys[j] = key;
+        }
+    }
+
+    /**
+     * Move square to the front of the list, keeping the order of the rest
+     *
+     * @return true if square is in the list
+     */
+    public boolean moveToFront(int square) {
+        for (int k = 0; k < size; k++) {
+            if (squares[k] == square) {
+                long flipped = flips[k];
+                int key = keys[k];
+                for (; k > 0; k--) {
+                    squares[k] = squares[k - 1];
+                    flips[k] = flips[k - 1];
+                    keys[k] = keys[k - 1];
+                }
+                squares[0] = square;
+                flips[0] = flipped;
+                keys[0] = key;
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,79 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Measures neural network evaluation throughput at several batch sizes on
+ * positions from random games. Batch size 1 is what a search gets from
+ * evaluating leaves one at a time; the larger sizes show what batching the
+ * leaves of a frontier node buys.
+ *
+ * Usage: java NetBench [weights file, or - for a random 128-64-32-1 network]
+ * [positions] [rounds]
+ */
+public class NetBench {
+    private static final int[] BATCH_SIZES = { 1, 4, 16, 64 };
+    static volatile float sink; // keeps the JIT from dropping the evaluations
+
+    public static void main(String[] args) throws IOException {
+        NeuralNet network = args.length > 0 && !args[0].equals("-") ? NeuralNet.load(Paths.get(args[0]))
+                : NeuralNet.random(1, 64, 32);
+        int positions = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        long[] own = new long[positions], opp = new long[positions];
+        Random random = new Random(1);
+        for (int p = 0; p < positions; p++) {
+            Board board = randomPosition(random);
+            own[p] = board.getDiscs('b');
+            opp[p] = board.getDiscs('w');
+        }
+
+        System.out.println("batch   evaluations/s  ns/evaluation");
+        for (int pass = 0; pass < 2; pass++) { // the first pass only warms up the JIT
+            for (int batch : BATCH_SIZES) {
+                NeuralNet.Workspace workspace = network.newWorkspace(batch);
+                long[] ownBatch = new long[batch], oppBatch = new long[batch];
+                float[] out = new float[batch];
+                long start = System.nanoTime();
+                for (int round = 0; round < rounds; round++) {
+                    for (int p = 0; p + batch <= positions; p += batch) {
+                        System.arraycopy(own, p, ownBatch, 0, batch);
+                        System.arraycopy(opp, p, oppBatch, 0, batch);
+                        network.evaluate(ownBatch, oppBatch, batch, out, workspace);
+                        sink = out[0];
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                long evaluations = (long) rounds * (positions / batch * batch);
+                if (pass == 1)
+                    System.out.printf("%5d %15.0f %14.1f%n", batch, evaluations * 1e9 / elapsed,
+                            (double) elapsed / evaluations);
+            }
+        }
+    }
+
+    /**
+     * Play 10 to 49 random moves from the start
+     */
+    private static Board randomPosition(Random random) {
+        Board board = new BitBoard();
+        char player = 'b';
+        int plies = 10 + random.nextInt(40);
+        for (int ply = 0; ply < plies; ply++) {
+            long moves = board.getMoves(player);
+            if (moves == 0) {
+                player = player == 'w' ? 'b' : 'w';
+                moves = board.getMoves(player);
+                if (moves == 0)
+                    break;
+            }
+            int n = random.nextInt(Long.bitCount(moves));
+            for (int k = 0; k < n; k++)
+                moves &= moves - 1;
+            board.play(player, Long.numberOfTrailingZeros(moves));
+            player = player == 'w' ? 'b' : 'w';
+        }
+        return board;
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Fully connected neural network evaluation. The input is 128 binary units
+ * (the AI's discs, then the opponent's discs), followed by hidden layers with
+ * ReLU activations and a single linear output, the value of the position for
+ * the AI in discs.
+ *
+ * All weights live in flat float arrays, stored input-major (the weights from
+ * input k to every output are contiguous). A layer is then a sum of weight
+ * rows scaled by the inputs, an a[i] += s * b[i] loop that the JIT compiles to
+ * SIMD instructions, and inputs that are zero (empty squares, inactive ReLUs)
+ * are skipped outright. Positions are evaluated in batches so each weight row
+ * is read once per batch rather than once per position.
+ *
+ * File layout (big-endian): int magic, int layer count n, n ints of layer
+ * sizes, then per layer the weights (input-major) followed by the biases as
+ * floats.
+ */
+public class NeuralNet {
+    private static final int MAGIC = 0x4E4E5431; // "NNT1"
+    static final int INPUTS = 128;
+    private static final int MAX_LAYERS = 16; // limits on what load accepts
+    private static final int MAX_WIDTH = 4096;
+
+    private final int[] sizes; // units per layer, inputs first, output last
+    private final float[][] weights; // [layer][input * outputs + output]
+    private final float[][] biases; // [layer][output]
+    private final ThreadLocal<Workspace> single = ThreadLocal.withInitial(() -> new Workspace(1)); // for score
+
+    private NeuralNet(int[] sizes) {
+        this.sizes = sizes;
+        weights = new float[sizes.length - 1][];
+        biases = new float[sizes.length - 1][];
+        for (int layer = 0; layer < weights.length; layer++) {
+            weights[layer] = new float[sizes[layer] * sizes[layer + 1]];
+            biases[layer] = new float[sizes[layer + 1]];
+        }
+    }
+
+    /**
+     * Scratch space for evaluating up to capacity positions at once. Each
+     * thread needs its own.
+     */
+    public class Workspace {
+        private final float[][] activations; // [layer][position * units + unit]
+        private final int capacity;
+        private final long[] ownOne = new long[1], oppOne = new long[1]; // batch of one
+        private final float[] outOne = new float[1];
+
+        private Workspace(int capacity) {
+            this.capacity = capacity;
+            activations = new float[sizes.length][];
+            for (int layer = 1; layer < sizes.length; layer++)
+                activations[layer] = new float[capacity * sizes[layer]];
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+    }
+
+    public Workspace newWorkspace(int capacity) {
+        return new Workspace(capacity);
+    }
+
+    /**
+     * Random weights scaled to keep activations in range, for benchmarks and
+     * tests
+     *
+     * @param hidden
+     *            units per hidden layer
+     */
+    public static NeuralNet random(long seed, int... hidden) {
+        int[] sizes = new int[hidden.length + 2];
+        sizes[0] = INPUTS;
+        System.arraycopy(hidden, 0, sizes, 1, hidden.length);
+        sizes[sizes.length - 1] = 1;
+        NeuralNet net = new NeuralNet(sizes);
+        Random random = new Random(seed);
+        for (int layer = 0; layer < net.weights.length; layer++) {
+            float scale = (float) Math.sqrt(2.0 / sizes[layer]);
+            for (int k = 0; k < net.weights[layer].length; k++)
+                net.weights[layer][k] = (float) random.nextGaussian() * scale;
+        }
+        return net;
+    }
+
+    /**
+     * Evaluate one position
+     *
+     * @return value for the owner of own, in discs
+     */
+    public float evaluate(long own, long opp, Workspace workspace) {
+        workspace.ownOne[0] = own;
+        workspace.oppOne[0] = opp;
+        evaluate(workspace.ownOne, workspace.oppOne, 1, workspace.outOne, workspace);
+        return workspace.outOne[0];
+    }
+
+    /**
+     * Evaluate one position
+     *
+     * @return value for the owner of own, in hundredths of a disc
+     */
+    public int score(long own, long opp, Workspace workspace) {
+        return Math.round(evaluate(own, opp, workspace) * 100);
+    }
+
+    /**
+     * As score, with a workspace of the calling thread's kept by the network
+     * for the purpose, so callers that evaluate one position at a time need
+     * no workspace of their own
+     */
+    public int score(long own, long opp) {
+        return score(own, opp, single.get());
+    }
+
+    /**
+     * Evaluate count positions at once
+     *
+     * @param own
+     *            discs of the player to score for, per position
+     * @param opp
+     *            discs of the other player, per position
+     * @param out
+     *            receives the value of each position, in discs
+     * @param workspace
+     *            scratch space with room for at least count positions
+     */
+    public void evaluate(long[] own, long[] opp, int count, float[] out, Workspace workspace) {
+        // First layer: the inputs are bits, so just add up the weight rows of the
+        // occupied squares
+        int width = sizes[1];
+        float[] hidden = workspace.activations[1];
+        float[] first = weights[0];
+        for (int b = 0; b < count; b++) {
+            int base = b * width;
+            System.arraycopy(biases[0], 0, hidden, base, width);
+            for (long bits = own[b]; bits != 0; bits &= bits - 1)
+                addRow(hidden, base, first, Long.numberOfTrailingZeros(bits) * width, width, 1f);
+            for (long bits = opp[b]; bits != 0; bits &= bits - 1)
+                addRow(hidden, base, first, (64 + Long.numberOfTrailingZeros(bits)) * width, width, 1f);
+        }
+        if (weights.length > 1)
+            relu(hidden, count * width);
+
+        // Dense layers: for each input unit, its weight row is applied to every
+        // position in the batch before moving on
+        for (int layer = 1; layer < weights.length; layer++) {
+            int inputs = sizes[layer], outputs = sizes[layer + 1];
+            float[] x = workspace.activations[layer];
+            float[] y = workspace.activations[layer + 1];
+            float[] w = weights[layer];
+            for (int b = 0; b < count; b++)
+                System.arraycopy(biases[layer], 0, y, b * outputs, outputs);
+            for (int k = 0; k < inputs; k++) {
+                int row = k * outputs;
+                for (int b = 0; b < count; b++) {
+                    float s = x[b * inputs + k];
+                    if (s != 0)
+                        addRow(y, b * outputs, w, row, outputs, s);
+                }
+            }
+            if (layer < weights.length - 1)
+                relu(y, count * outputs);
+        }
+        float[] result = workspace.activations[sizes.length - 1];
+        System.arraycopy(result, 0, out, 0, count);
+    }
+
+    /**
+     * y[yOffset..] += s * w[wOffset..], written as a plain counted loop so the
+     * JIT can vectorize it
+     */
+    private static void addRow(float[] y, int yOffset, float[] w, int wOffset, int n, float s) {
+        for (int i = 0; i < n; i++)
+            y[yOffset + i] += s * w[wOffset + i];
+    }
+
+    private static void relu(float[] x, int n) {
+        for (int i = 0; i < n; i++)
+            x[i] = Math.max(x[i], 0f);
+    }
+
+    public static NeuralNet load(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Network weights file is too large");
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+                ;
+        }
+        buffer.flip();
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC)
+            throw new IOException("Not a network weights file");
+        int count = buffer.getInt();
+        if (count < 2 || count > MAX_LAYERS)
+            throw new IOException("Network must have 2 to " + MAX_LAYERS + " layers, not " + count);
+        if (buffer.remaining() < 4 * count)
+            throw new IOException("Network weights file is truncated");
+        int[] sizes = new int[count];
+        long parameters = 0; // weights and biases the sizes call for
+        for (int layer = 0; layer < count; layer++) {
+            sizes[layer] = buffer.getInt();
+            if (sizes[layer] < 1 || sizes[layer] > MAX_WIDTH)
+                throw new IOException("Layer size " + sizes[layer] + " is not 1 to " + MAX_WIDTH);
+            if (layer > 0)
+                parameters += (long) sizes[layer - 1] * sizes[layer] + sizes[layer];
+        }
+        if (sizes[0] != INPUTS || sizes[count - 1] != 1)
+            throw new IOException("Network must have " + INPUTS + " inputs and 1 output");
+        if (buffer.remaining() != 4 * parameters)
+            throw new IOException("Network weights file has " + buffer.remaining()
+                    + " bytes of weights, its layers need " + 4 * parameters);
+        NeuralNet net = new NeuralNet(sizes);
+        FloatBuffer floats = buffer.asFloatBuffer();
+        for (int layer = 0; layer < net.weights.length; layer++) {
+            floats.get(net.weights[layer]);
+            floats.get(net.biases[layer]);
+        }
+        return net;
+    }
+
+    public void save(Path path) throws IOException {
+        int floats = 0;
+        for (int layer = 0; layer < weights.length; layer++)
+            floats += weights[layer].length + biases[layer].length;
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 4 * sizes.length + 4 * floats);
+        buffer.putInt(MAGIC).putInt(sizes.length);
+        for (int size : sizes)
+            buffer.putInt(size);
+        for (int layer = 0; layer < weights.length; layer++) {
+            for (float weight : weights[layer])
+                buffer.putFloat(weight);
+            for (float bias : biases[layer])
+                buffer.putFloat(bias);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+}
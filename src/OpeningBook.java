@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Opening book stored as a sorted binary file and read through a memory-mapped
+ * FileChannel, so opening it costs no parsing and no heap copy. Lookups are a
+ * binary search over the mapped entries.
+ *
+ * Positions are keyed by a symmetry-normalized Zobrist key: the position is
+ * hashed in all 8 rotations and reflections of the board and the smallest key
+ * is used, with the best move stored in that same orientation. Equivalent
+ * positions therefore share one entry.
+ *
+ * File layout (big-endian): an 8 byte magic number, an int entry count and 4
+ * reserved bytes, then the entries sorted by key, each a long key, an int
+ * score, a byte move, a byte search depth and 2 reserved bytes.
+ */
+public class OpeningBook {
+    static final long MAGIC = 0x4F5448424F4F4B31L; // "OTHBOOK1"
+    private static final int HEADER_BYTES = 16;
+    private static final int ENTRY_BYTES = 16;
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+
+    private OpeningBook(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getLong(0) != MAGIC)
+            throw new IOException("Not an opening book");
+        count = buffer.getInt(8);
+        if ((long) HEADER_BYTES + (long) count * ENTRY_BYTES > buffer.capacity())
+            throw new IOException("Opening book is truncated");
+    }
+
+    /**
+     * Map a book file into memory
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return the book move for player in position, -1 if the position is not
+     *         in the book
+     */
+    public int move(Board position, char player) {
+        long black = position.getDiscs('b'), white = position.getDiscs('w');
+        int symmetry = symmetry(black, white, player);
+        int index = find(key(black, white, player, symmetry));
+        if (index < 0)
+            return -1;
+        int move = buffer.get(HEADER_BYTES + index * ENTRY_BYTES + 12);
+        return Long.numberOfTrailingZeros(inverse(1L << move, symmetry));
+    }
+
+    /**
+     * @return the stored score for player in position, 0 if the position is not
+     *         in the book
+     */
+    public int score(Board position, char player) {
+        long black = position.getDiscs('b'), white = position.getDiscs('w');
+        int index = find(key(black, white, player, symmetry(black, white, player)));
+        return index < 0 ? 0 : buffer.getInt(HEADER_BYTES + index * ENTRY_BYTES + 8);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Binary search the mapped entries
+     *
+     * @return entry index, -1 if key is not in the book
+     */
+    private int find(long key) {
+        int low = 0, high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = buffer.getLong(HEADER_BYTES + mid * ENTRY_BYTES);
+            if (midKey < key)
+                low = mid + 1;
+            else if (midKey > key)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Pack a book entry for write
+     */
+    static long entry(int score, int move, int depth) {
+        return (score & 0xFFFFFFFFL) | ((long) move << 32) | ((long) depth << 40);
+    }
+
+    static int entryScore(long entry) {
+        return (int) entry;
+    }
+
+    static int entryMove(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    static int entryDepth(long entry) {
+        return (int) (entry >>> 40) & 0xFF;
+    }
+
+    /**
+     * Read every entry of a book file, for extending it
+     *
+     * @return packed entries by key
+     */
+    static TreeMap<Long, Long> read(Path path) throws IOException {
+        OpeningBook book = open(path);
+        TreeMap<Long, Long> entries = new TreeMap<>();
+        for (int index = 0; index < book.count; index++) {
+            int offset = HEADER_BYTES + index * ENTRY_BYTES;
+            entries.put(book.buffer.getLong(offset), entry(book.buffer.getInt(offset + 8),
+                    book.buffer.get(offset + 12), book.buffer.get(offset + 13)));
+        }
+        return entries;
+    }
+
+    /**
+     * Write packed entries, sorted by key, to a book file
+     */
+    static void write(Path path, SortedMap<Long, Long> entries) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + entries.size() * ENTRY_BYTES);
+        out.putLong(MAGIC).putInt(entries.size()).putInt(0);
+        for (Map.Entry<Long, Long> entry : entries.entrySet()) {
+            long value = entry.getValue();
+            out.putLong(entry.getKey()).putInt(entryScore(value)).put((byte) entryMove(value))
+                    .put((byte) entryDepth(value)).putShort((short) 0);
+        }
+        out.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining())
+                channel.write(out);
+        }
+    }
+
+    /**
+     * @return the symmetry (0-7) under which the position has the smallest key
+     */
+    static int symmetry(long black, long white, char side) {
+        int best = 0;
+        long bestKey = key(black, white, side, 0);
+        for (int symmetry = 1; symmetry < 8; symmetry++) {
+            long key = key(black, white, side, symmetry);
+            if (Long.compareUnsigned(key, bestKey) < 0) {
+                bestKey = key;
+                best = symmetry;
+            }
+        }
+        return best;
+    }
+
+    static long key(long black, long white, char side, int symmetry) {
+        return Zobrist.key(Zobrist.hash(transform(black, symmetry), transform(white, symmetry)), side);
+    }
+
+    /**
+     * Apply one of the 8 board symmetries. Bit 2 of symmetry transposes the board,
+     * then bit 1 mirrors it left to right, then bit 0 flips it top to bottom.
+     */
+    static long transform(long x, int symmetry) {
+        if ((symmetry & 4) != 0)
+            x = transpose(x);
+        if ((symmetry & 2) != 0)
+            x = mirror(x);
+        if ((symmetry & 1) != 0)
+            x = Long.reverseBytes(x); // each row is one byte
+        return x;
+    }
+
+    /**
+     * Undo transform, each step is its own inverse so they are applied in
+     * reverse order
+     */
+    static long inverse(long x, int symmetry) {
+        if ((symmetry & 1) != 0)
+            x = Long.reverseBytes(x);
+        if ((symmetry & 2) != 0)
+            x = mirror(x);
+        if ((symmetry & 4) != 0)
+            x = transpose(x);
+        return x;
+    }
+
+    /**
+     * Swap column j with column 7 - j
+     */
+    private static long mirror(long x) {
+        x = ((x >>> 1) & 0x5555555555555555L) | ((x & 0x5555555555555555L) << 1);
+        x = ((x >>> 2) & 0x3333333333333333L) | ((x & 0x3333333333333333L) << 2);
+        x = ((x >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((x & 0x0F0F0F0F0F0F0F0FL) << 4);
+        return x;
+    }
+
+    /**
+     * Swap row and column, (i, j) to (j, i)
+     */
+    private static long transpose(long x) {
+        long t = 0x0F0F0F0F00000000L & (x ^ (x << 28));
+        x ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (x ^ (x << 14));
+        x ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (x ^ (x << 7));
+        x ^= t ^ (t >>> 7);
+        return x;
+    }
+}
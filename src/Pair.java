@@ -1,19 +1,50 @@
 /**
  * Helper class to store index pairs
  *
+ * The 64 board squares are interned: Pair.of returns the same immutable
+ * instance for the same square every time, so looking a square up allocates
+ * nothing and its hash code is simply its 8 * x + y index.
+ *
  * @author Jacob Caggese
  * @date 4/18/18
  * @course Concepts in Artificial Intelligence
  */
-public class Pair {
-    private Integer x;
-    private Integer y;
+public final class Pair {
+    private static final Pair[] SQUARES = new Pair[64];
+
+    static {
+        for (int square = 0; square < 64; square++)
+            SQUARES[square] = new Pair(square / 8, square % 8);
+    }
 
-    public Pair(int x, int y) {
+    /** Not a square, returned when there is no move */
+    public static final Pair NONE = new Pair(-1, -1);
+
+    private final int x;
+    private final int y;
+
+    private Pair(int x, int y) {
         this.x = x;
         this.y = y;
     }
 
+    /**
+     * @return the shared instance for row x, column y, NONE if that is off the
+     *         board
+     */
+    public static Pair of(int x, int y) {
+        if (x < 0 || x > 7 || y < 0 || y > 7)
+            return NONE;
+        return SQUARES[8 * x + y];
+    }
+
+    /**
+     * @return the shared instance for square 8 * x + y
+     */
+    public static Pair of(int square) {
+        return SQUARES[square];
+    }
+
     public int getX() {
         return x;
     }
@@ -22,18 +53,23 @@ public class Pair {
         return y;
     }
 
+    /**
+     * @return 8 * x + y index of the square
+     */
+    public int getSquare() {
+        return 8 * x + y;
+    }
+
     @Override
     public boolean equals(Object obj) {
-        if (obj.getClass() == getClass()) {
-            if (((Pair) obj).getY() == y && ((Pair) obj).getX() == x)
-                return true;
-        }
-        return false;
+        if (obj == this)
+            return true;
+        return obj instanceof Pair && ((Pair) obj).x == x && ((Pair) obj).y == y;
     }
 
     @Override
-    public int hashCode(){
-        return Integer.parseInt((x.toString() + y.toString()));
+    public int hashCode() {
+        return 8 * x + y;
     }
 
     @Override
@@ -0,0 +1,269 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Pattern-based evaluation. The board is covered by overlapping lines of
+ * squares (edges with the X-squares, 3x3 and 2x5 corners, rows and diagonals)
+ * in every orientation. Each line's contents, read as a base-3 number (0 empty,
+ * 1 black, 2 white), indexes a table of learned weights, one table per pattern
+ * type and game phase. The evaluation is the sum of those weights, so a leaf
+ * costs one array read per line instead of a move generation pass.
+ *
+ * The line indices can be kept up to date move by move with a PatternIndex.
+ * Weights are in discs from black's point of view; without a weights file the
+ * tables are seeded from a static square table so the evaluation is usable
+ * before any training.
+ */
+public class PatternEval {
+    private static final int MAGIC = 0x50415431; // "PAT1"
+    static final int PHASES = 12; // by number of discs on the board, 5 discs per phase
+
+    // Base pattern of each type as {i, j} pairs. Every rotation and reflection
+    // of these is an instance of the same type sharing its weights.
+    private static final int[][][] TYPES = {
+            { { 0, 0 }, { 0, 1 }, { 0, 2 }, { 0, 3 }, { 0, 4 }, { 0, 5 }, { 0, 6 }, { 0, 7 }, { 1, 1 }, { 1, 6 } },
+            { { 0, 0 }, { 0, 1 }, { 0, 2 }, { 1, 0 }, { 1, 1 }, { 1, 2 }, { 2, 0 }, { 2, 1 }, { 2, 2 } },
+            { { 0, 0 }, { 0, 1 }, { 0, 2 }, { 0, 3 }, { 0, 4 }, { 1, 0 }, { 1, 1 }, { 1, 2 }, { 1, 3 }, { 1, 4 } },
+            row(1), row(2), row(3), diagonal(0), diagonal(1), diagonal(2), diagonal(3), diagonal(4) };
+
+    // Square values used to seed untrained weights, corners good, X- and C-squares bad
+    private static final int[] SEED = { 20, -3, 2, 1, 1, 2, -3, 20, -3, -7, -1, 0, 0, -1, -7, -3, 2, -1, 1, 0, 0,
+            1, -1, 2, 1, 0, 0, 0, 0, 0, 0, 1, 1, 0, 0, 0, 0, 0, 0, 1, 2, -1, 1, 0, 0, 1, -1, 2, -3, -7, -1, 0, 0, -1,
+            -7, -3, 20, -3, 2, 1, 1, 2, -3, 20 };
+
+    static final int[] TYPE_SIZE = new int[TYPES.length]; // 3^length
+    static final int[] INSTANCE_TYPE; // type of each instance
+    static final int[][] INSTANCE_SQUARES; // squares of each instance, lowest digit first
+    static final int[][] SQUARE_INSTANCES = new int[64][]; // instances covering each square
+    static final int[][] SQUARE_POWERS = new int[64][]; // the square's digit value in each
+
+    static {
+        ArrayList<int[]> instances = new ArrayList<>();
+        ArrayList<Integer> types = new ArrayList<>();
+        for (int type = 0; type < TYPES.length; type++) {
+            TYPE_SIZE[type] = pow3(TYPES[type].length);
+            ArrayList<Long> seen = new ArrayList<>();
+            for (int symmetry = 0; symmetry < 8; symmetry++) {
+                int[] squares = new int[TYPES[type].length];
+                long mask = 0;
+                for (int k = 0; k < squares.length; k++) {
+                    long bit = 1L << (8 * TYPES[type][k][0] + TYPES[type][k][1]);
+                    squares[k] = Long.numberOfTrailingZeros(OpeningBook.transform(bit, symmetry));
+                    mask |= 1L << squares[k];
+                }
+                if (!seen.contains(mask)) { // symmetric patterns map onto themselves
+                    seen.add(mask);
+                    instances.add(squares);
+                    types.add(type);
+                }
+            }
+        }
+        INSTANCE_SQUARES = instances.toArray(new int[0][]);
+        INSTANCE_TYPE = new int[types.size()];
+        for (int i = 0; i < INSTANCE_TYPE.length; i++)
+            INSTANCE_TYPE[i] = types.get(i);
+        for (int square = 0; square < 64; square++) {
+            ArrayList<int[]> covering = new ArrayList<>();
+            for (int i = 0; i < INSTANCE_SQUARES.length; i++) {
+                for (int k = 0; k < INSTANCE_SQUARES[i].length; k++) {
+                    if (INSTANCE_SQUARES[i][k] == square)
+                        covering.add(new int[] { i, pow3(k) });
+                }
+            }
+            SQUARE_INSTANCES[square] = new int[covering.size()];
+            SQUARE_POWERS[square] = new int[covering.size()];
+            for (int c = 0; c < covering.size(); c++) {
+                SQUARE_INSTANCES[square][c] = covering.get(c)[0];
+                SQUARE_POWERS[square][c] = covering.get(c)[1];
+            }
+        }
+    }
+
+    private static PatternEval seeded; // shared default, created on first use
+
+    private final float[][][] weights; // [phase][type][index]
+
+    private PatternEval() {
+        weights = new float[PHASES][TYPES.length][];
+        for (int phase = 0; phase < PHASES; phase++) {
+            for (int type = 0; type < TYPES.length; type++)
+                weights[phase][type] = new float[TYPE_SIZE[type]];
+        }
+    }
+
+    /**
+     * @return weights seeded from the static square table, shared by every
+     *         caller
+     */
+    public static synchronized PatternEval seeded() {
+        if (seeded == null) {
+            seeded = new PatternEval();
+            seeded.seed();
+        }
+        return seeded;
+    }
+
+    /**
+     * @return a private copy of the seeded weights, for training
+     */
+    public static PatternEval untrained() {
+        PatternEval eval = new PatternEval();
+        eval.seed();
+        return eval;
+    }
+
+    /**
+     * Give every pattern index the sum of its squares' seed values, each square
+     * split evenly between the instances that cover it
+     */
+    private void seed() {
+        for (int type = 0; type < TYPES.length; type++) {
+            int[] squares = INSTANCE_SQUARES[firstInstance(type)];
+            for (int index = 0; index < TYPE_SIZE[type]; index++) {
+                float value = 0;
+                int code = index;
+                for (int square : squares) {
+                    int digit = code % 3;
+                    code /= 3;
+                    float share = (float) SEED[square] / SQUARE_INSTANCES[square].length;
+                    value += digit == 1 ? share : digit == 2 ? -share : 0;
+                }
+                for (int phase = 0; phase < PHASES; phase++)
+                    weights[phase][type][index] = value;
+            }
+        }
+    }
+
+    /**
+     * Score with incrementally updated indices
+     *
+     * @return evaluation for side, in hundredths of a disc
+     */
+    public int score(PatternIndex index, char side) {
+        float[][] phaseWeights = weights[phase(index.getDiscs())];
+        int[] codes = index.getIndices();
+        float sum = 0;
+        for (int i = 0; i < codes.length; i++)
+            sum += phaseWeights[INSTANCE_TYPE[i]][codes[i]];
+        int value = Math.round(sum * 100);
+        return side == 'b' ? value : -value;
+    }
+
+    /**
+     * Score a board from scratch
+     *
+     * @return evaluation for side, in hundredths of a disc
+     */
+    public int score(Board board, char side) {
+        PatternIndex index = new PatternIndex();
+        index.set(board);
+        return score(index, side);
+    }
+
+    /**
+     * One stochastic gradient step towards target for the position in index
+     *
+     * @param target
+     *            value of the position for black, in discs
+     * @return error before the step
+     */
+    public float train(PatternIndex index, float target, float rate) {
+        float[][] phaseWeights = weights[phase(index.getDiscs())];
+        int[] codes = index.getIndices();
+        float sum = 0;
+        for (int i = 0; i < codes.length; i++)
+            sum += phaseWeights[INSTANCE_TYPE[i]][codes[i]];
+        float error = target - sum;
+        float step = rate * error / codes.length;
+        for (int i = 0; i < codes.length; i++)
+            phaseWeights[INSTANCE_TYPE[i]][codes[i]] += step;
+        return error;
+    }
+
+    /**
+     * Read weights written by save
+     */
+    public static PatternEval load(Path path) throws IOException {
+        PatternEval eval = new PatternEval();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+                ;
+            buffer.flip();
+            if (buffer.remaining() != 12 + 4 * floatCount() * PHASES || buffer.getInt() != MAGIC
+                    || buffer.getInt() != PHASES || buffer.getInt() != TYPES.length)
+                throw new IOException("Not a pattern weights file for this evaluator");
+            FloatBuffer floats = buffer.asFloatBuffer();
+            for (float[][] phase : eval.weights) {
+                for (float[] table : phase)
+                    floats.get(table);
+            }
+        }
+        return eval;
+    }
+
+    public void save(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12 + 4 * floatCount() * PHASES);
+        buffer.putInt(MAGIC).putInt(PHASES).putInt(TYPES.length);
+        for (float[][] phase : weights) {
+            for (float[] table : phase) {
+                for (float weight : table)
+                    buffer.putFloat(weight);
+            }
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return number of weights in one phase
+     */
+    private static int floatCount() {
+        int floats = 0;
+        for (int size : TYPE_SIZE)
+            floats += size;
+        return floats;
+    }
+
+    static int phase(int discs) {
+        return Math.min(PHASES - 1, (discs - 4) / 5);
+    }
+
+    private static int firstInstance(int type) {
+        for (int i = 0; i < INSTANCE_TYPE.length; i++) {
+            if (INSTANCE_TYPE[i] == type)
+                return i;
+        }
+        return -1;
+    }
+
+    private static int pow3(int n) {
+        int value = 1;
+        for (int k = 0; k < n; k++)
+            value *= 3;
+        return value;
+    }
+
+    private static int[][] row(int i) {
+        int[][] squares = new int[8][];
+        for (int j = 0; j < 8; j++)
+            squares[j] = new int[] { i, j };
+        return squares;
+    }
+
+    private static int[][] diagonal(int offset) {
+        int[][] squares = new int[8 - offset][];
+        for (int k = 0; k < squares.length; k++)
+            squares[k] = new int[] { k, k + offset };
+        return squares;
+    }
+}
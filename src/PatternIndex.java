@@ -0,0 +1,67 @@
+/**
+ * Base-3 codes of every pattern instance for one position, kept up to date as
+ * moves are made and taken back so that PatternEval can score a position
+ * without looking at the board. Placing a disc adds its colour's digit to each
+ * pattern covering the square, and a flip swaps one colour's digit for the
+ * other's. Each search thread needs its own index.
+ */
+public class PatternIndex {
+    private final int[] indices = new int[PatternEval.INSTANCE_SQUARES.length];
+    private int discs;
+
+    /**
+     * Compute every code from scratch
+     */
+    public void set(Board board) {
+        long black = board.getDiscs('b'), white = board.getDiscs('w');
+        for (int i = 0; i < indices.length; i++) {
+            int[] squares = PatternEval.INSTANCE_SQUARES[i];
+            int code = 0;
+            for (int k = squares.length - 1; k >= 0; k--) {
+                long bit = 1L << squares[k];
+                code = 3 * code + ((black & bit) != 0 ? 1 : (white & bit) != 0 ? 2 : 0);
+            }
+            indices[i] = code;
+        }
+        discs = Long.bitCount(black | white);
+    }
+
+    /**
+     * Follow Board.play
+     */
+    public void play(char player, int square, long flips) {
+        int placed = player == 'b' ? 1 : 2;
+        int flipped = player == 'b' ? -1 : 1; // white (2) to black (1) or back
+        update(square, placed);
+        for (; flips != 0; flips &= flips - 1)
+            update(Long.numberOfTrailingZeros(flips), flipped);
+        discs++;
+    }
+
+    /**
+     * Follow Board.undo
+     */
+    public void undo(char player, int square, long flips) {
+        int placed = player == 'b' ? -1 : -2;
+        int flipped = player == 'b' ? 1 : -1;
+        update(square, placed);
+        for (; flips != 0; flips &= flips - 1)
+            update(Long.numberOfTrailingZeros(flips), flipped);
+        discs--;
+    }
+
+    private void update(int square, int digitChange) {
+        int[] instances = PatternEval.SQUARE_INSTANCES[square];
+        int[] powers = PatternEval.SQUARE_POWERS[square];
+        for (int c = 0; c < instances.length; c++)
+            indices[instances[c]] += digitChange * powers[c];
+    }
+
+    int[] getIndices() {
+        return indices;
+    }
+
+    int getDiscs() {
+        return discs;
+    }
+}
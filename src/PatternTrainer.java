@@ -0,0 +1,97 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Trains pattern evaluation weights from self-play. Games are played by a
+ * shallow search with some random moves mixed in for variety, and the last
+ * empty squares are solved exactly, so every position of a game is labelled
+ * with the game's true final disc differential. The weights are then fitted
+ * to those labels by stochastic gradient descent and written to a file that
+ * PatternEval.load reads. Training continues from an existing weights file.
+ *
+ * Usage: java PatternTrainer [weights file] [games] [epochs] [rate] [seed]
+ */
+public class PatternTrainer {
+    private static final double RANDOM_MOVE_CHANCE = 0.1;
+
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "patterns.bin");
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int epochs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        float rate = args.length > 3 ? Float.parseFloat(args[3]) : 0.1f;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+
+        PatternEval eval = Files.exists(path) ? PatternEval.load(path) : PatternEval.untrained();
+        Random random = new Random(seed);
+        AI black = new AI('b', null, 2);
+        AI white = new AI('w', null, 2);
+        black.setDepth(2);
+        white.setDepth(2);
+
+        // every position as black and white discs, with its game's result
+        long[] blackDiscs = new long[games * 60];
+        long[] whiteDiscs = new long[games * 60];
+        float[] targets = new float[games * 60];
+        int positions = 0;
+        for (int game = 0; game < games; game++) {
+            Board board = new BitBoard();
+            char player = 'b';
+            int first = positions;
+            while (true) {
+                long moves = board.getMoves(player);
+                if (moves == 0) {
+                    player = player == 'w' ? 'b' : 'w';
+                    moves = board.getMoves(player);
+                    if (moves == 0)
+                        break;
+                }
+                blackDiscs[positions] = board.getDiscs('b');
+                whiteDiscs[positions] = board.getDiscs('w');
+                positions++;
+                int move;
+                if (random.nextDouble() < RANDOM_MOVE_CHANCE) {
+                    int n = random.nextInt(Long.bitCount(moves));
+                    for (int k = 0; k < n; k++)
+                        moves &= moves - 1;
+                    move = Long.numberOfTrailingZeros(moves);
+                } else {
+                    Pair choice = (player == 'b' ? black : white).getMove(board);
+                    move = choice.getSquare();
+                }
+                board.play(player, move);
+                player = player == 'w' ? 'b' : 'w';
+            }
+            int result = board.count('b') - board.count('w');
+            int empty = 64 - board.count('b') - board.count('w');
+            result += result > 0 ? empty : result < 0 ? -empty : 0; // empties go to the winner
+            for (int p = first; p < positions; p++)
+                targets[p] = result;
+        }
+
+        PatternIndex index = new PatternIndex();
+        int[] order = new int[positions];
+        for (int p = 0; p < positions; p++)
+            order[p] = p;
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            for (int p = positions - 1; p > 0; p--) { // shuffle
+                int q = random.nextInt(p + 1);
+                int swap = order[p];
+                order[p] = order[q];
+                order[q] = swap;
+            }
+            double squared = 0;
+            for (int p : order) {
+                index.set(new BitBoard(blackDiscs[p], whiteDiscs[p]));
+                float error = eval.train(index, targets[p], rate);
+                squared += error * error;
+            }
+            System.out.printf("epoch %d: %d positions, rms error %.2f discs%n", epoch, positions,
+                    Math.sqrt(squared / positions));
+        }
+        eval.save(path);
+        System.out.println("Saved " + path);
+    }
+}
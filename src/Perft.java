@@ -0,0 +1,115 @@
+/**
+ * Move generator check. Counts the leaves of the move tree to a given depth,
+ * where a pass is a ply of its own and a finished game is a leaf wherever it
+ * ends, and compares the counts from the start position with the published
+ * Othello perft values. The same tree is also counted on the reference
+ * ArrayBoard, up to the reference depth since it is far slower, so any
+ * faster move generator has to agree with both before it is trusted. Nodes per
+ * second are reported for every board.
+ *
+ * A position is 64 squares row by row as b, w or - (e also counts as empty)
+ * followed by the side to move, for example the start position is
+ * ---------------------------wb------bw--------------------------- b
+ *
+ * Usage: java Perft [depth] [reference depth] [position] [side]
+ */
+public class Perft {
+    // Leaves from the start position at depth 1, 2, ...
+    static final long[] KNOWN = { 4, 12, 56, 244, 1396, 8200, 55092, 390216, 3005288, 24571284, 212258800,
+            1939886636L, 18429641748L };
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 9;
+        int referenceDepth = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        boolean start = args.length < 3;
+        Board[] boards = { new BitBoard(), new ArrayBoard() };
+        char player = 'b';
+        if (!start) {
+            player = args.length > 3 ? args[3].charAt(0) : 'b';
+            for (int b = 0; b < boards.length; b++)
+                boards[b] = parse(args[2], boards[b] instanceof BitBoard);
+        }
+
+        int failures = 0;
+        System.out.println("depth          leaves  BitBoard knodes/s  ArrayBoard knodes/s  result");
+        for (int d = 1; d <= depth; d++) {
+            long[] leaves = new long[boards.length];
+            double[] rates = new double[boards.length];
+            for (int b = 0; b < boards.length; b++) {
+                if (b > 0 && d > referenceDepth) { // not checked
+                    leaves[b] = leaves[0];
+                    rates[b] = Double.NaN;
+                    continue;
+                }
+                long begin = System.nanoTime();
+                Perft perft = new Perft();
+                leaves[b] = perft.count(boards[b], player, d);
+                rates[b] = perft.nodes * 1e6 / Math.max(1, System.nanoTime() - begin);
+            }
+            String result = "ok";
+            if (leaves[0] != leaves[1])
+                result = "BitBoard and ArrayBoard differ, ArrayBoard " + leaves[1];
+            else if (start && d <= KNOWN.length && leaves[0] != KNOWN[d - 1])
+                result = "expected " + KNOWN[d - 1];
+            if (!result.equals("ok"))
+                failures++;
+            System.out.printf("%5d %15d %18.0f %20s  %s%n", d, leaves[0], rates[0],
+                    Double.isNaN(rates[1]) ? "-" : String.format("%.0f", rates[1]), result);
+        }
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    private long nodes; // every position visited, for the node rate
+
+    /**
+     * @return number of leaves of the move tree of position to depth, position
+     *         is left as it was
+     */
+    long count(Board position, char player, int depth) {
+        nodes = 0;
+        return perft(position, player, depth, false);
+    }
+
+    private long perft(Board board, char player, int depth, boolean passed) {
+        nodes++;
+        if (depth == 0)
+            return 1;
+        char other = player == 'w' ? 'b' : 'w';
+        long moves = board.getMoves(player);
+        if (moves == 0) {
+            if (passed) // game over, the position counts as a leaf
+                return 1;
+            return perft(board, other, depth - 1, true);
+        }
+        long leaves = 0;
+        for (; moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            long flips = board.play(player, square);
+            leaves += perft(board, other, depth - 1, false);
+            board.undo(player, square, flips);
+        }
+        return leaves;
+    }
+
+    /**
+     * Read a 64 square position string
+     */
+    private static Board parse(String squares, boolean bitBoard) {
+        if (squares.length() != 64)
+            throw new IllegalArgumentException("A position needs 64 squares, got " + squares.length());
+        char[][] array = new char[8][8];
+        long black = 0, white = 0;
+        for (int square = 0; square < 64; square++) {
+            char c = Character.toLowerCase(squares.charAt(square));
+            array[square / 8][square % 8] = c == 'b' ? 'b' : c == 'w' ? 'w' : 'e';
+            if (c == 'b')
+                black |= 1L << square;
+            else if (c == 'w')
+                white |= 1L << square;
+        }
+        if (bitBoard)
+            return new BitBoard(black, white);
+        return new ArrayBoard(array);
+    }
+}
@@ -0,0 +1,203 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Parameters for Multi-ProbCut selective search. For every search depth from
+ * MIN_DEPTH up, and for every game stage, a line deep = slope * shallow +
+ * intercept is fitted between the scores of a search at that depth and a
+ * search at half the depth, along with the standard deviation of its error.
+ * The searcher uses the line to decide from a cheap shallow search whether the
+ * deep search would fall outside its window anyway.
+ *
+ * The fit depends on the heuristic, so each heuristic needs its own. Run main
+ * to fit and save one; the fitting tool plays random games and searches their
+ * positions to every depth up to the maximum.
+ *
+ * File layout (big-endian): int magic, int stages, int depths, then slope,
+ * intercept and sigma as floats for every stage and depth.
+ *
+ * Usage: java ProbCut [heuristic] [output file] [positions] [max depth] [seed]
+ */
+public class ProbCut {
+    private static final int MAGIC = 0x4D504331; // "MPC1"
+    static final int MIN_DEPTH = 3; // shallower nodes are searched full width
+    static final int DEPTHS = 21; // fits for depths below this
+    static final int STAGES = 3; // opening, midgame, late midgame by empty squares
+
+    private final float[][] slope = new float[STAGES][DEPTHS];
+    private final float[][] intercept = new float[STAGES][DEPTHS];
+    private final float[][] sigma = new float[STAGES][DEPTHS]; // 0 where there is no fit
+
+    private ProbCut() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int select = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        Path path = Paths.get(args.length > 1 ? args[1] : "heuristic" + select + ".mpc");
+        int positions = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+        int maxDepth = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+
+        ProbCut probCut = fit(select, positions, maxDepth, seed);
+        System.out.println("stage depth shallow      slope   intercept       sigma");
+        for (int stage = 0; stage < STAGES; stage++) {
+            for (int depth = MIN_DEPTH; depth <= maxDepth; depth++) {
+                if (probCut.isFitted(stage, depth))
+                    System.out.printf("%5d %5d %7d %10.3f %11.1f %11.1f%n", stage, depth, shallowDepth(depth),
+                            probCut.slope[stage][depth], probCut.intercept[stage][depth],
+                            probCut.sigma[stage][depth]);
+            }
+        }
+        probCut.save(path);
+        System.out.println("Saved " + path);
+    }
+
+    /**
+     * Depth of the shallow search that predicts a search to depth
+     */
+    static int shallowDepth(int depth) {
+        return depth / 2;
+    }
+
+    static int stage(int empties) {
+        return empties > 40 ? 0 : empties > 20 ? 1 : 2;
+    }
+
+    /**
+     * @return true if there is a usable fit for depth at stage
+     */
+    boolean isFitted(int stage, int depth) {
+        return depth < DEPTHS && sigma[stage][depth] > 0 && slope[stage][depth] > 0;
+    }
+
+    float getSlope(int stage, int depth) {
+        return slope[stage][depth];
+    }
+
+    float getIntercept(int stage, int depth) {
+        return intercept[stage][depth];
+    }
+
+    float getSigma(int stage, int depth) {
+        return sigma[stage][depth];
+    }
+
+    /**
+     * Fit every depth from MIN_DEPTH to maxDepth by least squares over the
+     * positions of random games, each searched with the plain full width search
+     */
+    public static ProbCut fit(int select, int positions, int maxDepth, long seed) {
+        maxDepth = Math.min(maxDepth, DEPTHS - 1);
+        // sums per stage and depth: n, x, y, xx, xy, yy
+        double[][][] sums = new double[STAGES][DEPTHS][6];
+        Random random = new Random(seed);
+        for (int p = 0; p < positions; p++) {
+            Board board = new BitBoard();
+            char player = 'b';
+            int plies = random.nextInt(50);
+            for (int ply = 0; ply < plies; ply++) {
+                long moves = board.getMoves(player);
+                if (moves == 0) {
+                    player = player == 'w' ? 'b' : 'w';
+                    moves = board.getMoves(player);
+                    if (moves == 0)
+                        break;
+                }
+                int n = random.nextInt(Long.bitCount(moves));
+                for (int k = 0; k < n; k++)
+                    moves &= moves - 1;
+                board.play(player, Long.numberOfTrailingZeros(moves));
+                player = player == 'w' ? 'b' : 'w';
+            }
+            if (board.getMoves(player) == 0)
+                continue;
+            int empties = 64 - Long.bitCount(board.getDiscs('b') | board.getDiscs('w'));
+            int stage = stage(empties);
+            AI ai = new AI(player, null, select);
+            ai.setEndgameEmpties(0);
+            int[] values = new int[maxDepth + 1];
+            for (int depth = 1; depth <= Math.min(maxDepth, empties); depth++) {
+                ai.setDepth(depth);
+                ai.clearHash();
+                ai.getMove(board);
+                values[depth] = Integer.MIN_VALUE;
+                for (int value : ai.getHeuristicMap().values())
+                    values[depth] = Math.max(values[depth], value);
+            }
+            for (int depth = MIN_DEPTH; depth <= Math.min(maxDepth, empties); depth++) {
+                double x = values[shallowDepth(depth)], y = values[depth];
+                double[] s = sums[stage][depth];
+                s[0]++;
+                s[1] += x;
+                s[2] += y;
+                s[3] += x * x;
+                s[4] += x * y;
+                s[5] += y * y;
+            }
+        }
+
+        ProbCut probCut = new ProbCut();
+        for (int stage = 0; stage < STAGES; stage++) {
+            for (int depth = MIN_DEPTH; depth <= maxDepth; depth++) {
+                double[] s = sums[stage][depth];
+                double n = s[0];
+                if (n < 10) // too few samples to trust
+                    continue;
+                double varX = s[3] / n - (s[1] / n) * (s[1] / n);
+                if (varX <= 0)
+                    continue;
+                double covXY = s[4] / n - (s[1] / n) * (s[2] / n);
+                double a = covXY / varX;
+                double b = s[2] / n - a * s[1] / n;
+                // mean squared residual of y - (a x + b)
+                double residual = s[5] / n - 2 * a * s[4] / n - 2 * b * s[2] / n + a * a * s[3] / n
+                        + 2 * a * b * s[1] / n + b * b;
+                probCut.slope[stage][depth] = (float) a;
+                probCut.intercept[stage][depth] = (float) b;
+                probCut.sigma[stage][depth] = (float) Math.sqrt(Math.max(residual, 0));
+            }
+        }
+        return probCut;
+    }
+
+    public static ProbCut load(Path path) throws IOException {
+        ProbCut probCut = new ProbCut();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+                ;
+            buffer.flip();
+            if (buffer.remaining() != 12 + 12 * STAGES * DEPTHS || buffer.getInt() != MAGIC
+                    || buffer.getInt() != STAGES || buffer.getInt() != DEPTHS)
+                throw new IOException("Not a ProbCut parameter file");
+            for (int stage = 0; stage < STAGES; stage++) {
+                for (int depth = 0; depth < DEPTHS; depth++) {
+                    probCut.slope[stage][depth] = buffer.getFloat();
+                    probCut.intercept[stage][depth] = buffer.getFloat();
+                    probCut.sigma[stage][depth] = buffer.getFloat();
+                }
+            }
+        }
+        return probCut;
+    }
+
+    public void save(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12 + 12 * STAGES * DEPTHS);
+        buffer.putInt(MAGIC).putInt(STAGES).putInt(DEPTHS);
+        for (int stage = 0; stage < STAGES; stage++) {
+            for (int depth = 0; depth < DEPTHS; depth++)
+                buffer.putFloat(slope[stage][depth]).putFloat(intercept[stage][depth]).putFloat(sigma[stage][depth]);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test harness for the AI search. Plays random games to collect positions, then
+ * checks that the alpha-beta search picks the same move with the same score as
+ * a plain minimax without pruning at the same depth, for every heuristic.
+ * Prints the node counts of both searches to show what pruning saves.
+ * Analysis mode is checked too: its lines must be the best root moves with
+ * their exact minimax scores.
+ * Endgame positions are also checked against an unpruned exact solve.
+ *
+ * Usage: java SearchCheck [positions] [max depth] [seed]
+ */
+public class SearchCheck {
+    private static final int INFINITY = 1000000000;
+    private static final int ANALYSIS_LINES = 3;
+
+    private AI ai;
+    private char player;
+    private Board board;
+    private long nodes;
+    private int bestSquare;
+    private final int[] rootValues = new int[64]; // by square, of the last search
+
+    private SearchCheck(AI ai, char player) {
+        this.ai = ai;
+        this.player = player;
+    }
+
+    public static void main(String[] args) {
+        int positions = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int maxDepth = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        Random random = new Random(seed);
+        int failures = 0;
+
+        System.out.println("select depth  positions  minimax nodes  alpha-beta nodes  ratio");
+        Board[] boards = new Board[positions];
+        char[] players = new char[positions];
+        for (int p = 0; p < positions; p++) {
+            players[p] = randomPosition(random, boards, p);
+        }
+        NeuralNet network = NeuralNet.random(seed, 32, 16); // untrained, but exercises the batched leaves
+        for (int select = 1; select <= 5; select++) {
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                long fullNodes = 0, prunedNodes = 0;
+                for (int p = 0; p < positions; p++) {
+                    AI ai = new AI(players[p], null, select);
+                    ai.setDepth(depth);
+                    ai.setEndgameEmpties(0);
+                    ai.setNetwork(network);
+                    Pair move = ai.getMove(boards[p]);
+                    prunedNodes += ai.getNodes();
+
+                    SearchCheck reference = new SearchCheck(ai, players[p]);
+                    int score = reference.search(boards[p], depth);
+                    fullNodes += reference.nodes;
+                    Pair expected = Pair.of(reference.bestSquare);
+                    if (!expected.equals(move) || score != ai.getHeuristicMap().get(move)) {
+                        failures++;
+                        System.err.println("Mismatch select " + select + " depth " + depth + ": expected "
+                                + expected + " = " + score + ", got " + move + " = "
+                                + ai.getHeuristicMap().get(move) + boardString(boards[p]));
+                    }
+                    failures += checkAnalysis(players[p], boards[p], select, depth, network, reference);
+                }
+                System.out.printf("%6d %5d %10d %14d %17d %6.2f%n", select, depth, positions, fullNodes,
+                        prunedNodes, (double) fullNodes / prunedNodes);
+            }
+        }
+        failures += checkEndgames(random, positions);
+        if (failures > 0) {
+            System.err.println(failures + " mismatches");
+            System.exit(1);
+        }
+        System.out.println("All searches match");
+    }
+
+    /**
+     * Search position in analysis mode and check its lines against the root
+     * values of the reference minimax
+     *
+     * @return 1 for a mismatch, otherwise 0
+     */
+    private static int checkAnalysis(char player, Board position, int select, int depth, NeuralNet network,
+            SearchCheck reference) {
+        AI ai = new AI(player, null, select);
+        ai.setDepth(depth);
+        ai.setEndgameEmpties(0);
+        ai.setNetwork(network);
+        ai.setAnalysisLines(ANALYSIS_LINES);
+        ai.getMove(position);
+        List<AnalysisLine> lines = ai.getAnalysis();
+        long moves = position.getMoves(player);
+        int[] expected = new int[Long.bitCount(moves)];
+        for (int k = 0; moves != 0; moves &= moves - 1)
+            expected[k++] = reference.rootValues[Long.numberOfTrailingZeros(moves)];
+        Arrays.sort(expected);
+        boolean match = lines.size() == Math.min(ANALYSIS_LINES, expected.length);
+        for (int k = 0; match && k < lines.size(); k++) {
+            AnalysisLine line = lines.get(k);
+            match = line.getScore() == expected[expected.length - 1 - k]
+                    && line.getScore() == reference.rootValues[line.getMove().getSquare()]
+                    && line.getPrincipalVariation()[0] == line.getMove().getSquare();
+        }
+        if (match)
+            return 0;
+        System.err.println("Analysis mismatch select " + select + " depth " + depth + ": expected "
+                + Arrays.toString(expected) + ", got " + lines + boardString(position));
+        return 1;
+    }
+
+    /**
+     * Solve random positions with 8 to 10 empty squares with the endgame solver
+     * and with a plain minimax over final disc differential, and check that both
+     * agree on the score and that the solver's move achieves it.
+     *
+     * @return number of mismatches
+     */
+    private static int checkEndgames(Random random, int positions) {
+        int failures = 0;
+        long solverNodes = 0, fullNodes = 0;
+        EndgameSolver solver = new EndgameSolver();
+        for (int p = 0; p < positions; p++) {
+            Board board;
+            char player;
+            do {
+                board = new BitBoard();
+                player = 'b';
+                int empties = 8 + random.nextInt(3);
+                while (64 - board.count('b') - board.count('w') > empties) {
+                    long moves = board.getMoves(player);
+                    if (moves == 0) {
+                        player = other(player);
+                        moves = board.getMoves(player);
+                        if (moves == 0)
+                            break;
+                    }
+                    board.play(player, nthSquare(moves, random.nextInt(Long.bitCount(moves))));
+                    player = other(player);
+                }
+            } while (board.getMoves(player) == 0);
+
+            int square = solver.solve(board, player, 0);
+            solverNodes += solver.getNodes();
+            SearchCheck reference = new SearchCheck(null, player);
+            reference.board = board.copy();
+            int score = reference.solve(player);
+            long flips = reference.board.play(player, square);
+            int moveScore = -reference.solve(other(player));
+            reference.board.undo(player, square, flips);
+            fullNodes += reference.nodes;
+            if (solver.getScore() != score || moveScore != score) {
+                failures++;
+                System.err.println("Endgame mismatch: expected " + score + ", got " + solver.getScore()
+                        + " with move " + square + " worth " + moveScore + boardString(board));
+            }
+        }
+        System.out.printf("endgame %d positions, solver nodes %d, minimax nodes %d%n", positions, solverNodes,
+                fullNodes);
+        return failures;
+    }
+
+    /**
+     * Unpruned search to the end of the game
+     *
+     * @return final disc differential for side
+     */
+    private int solve(char side) {
+        nodes++;
+        long moves = board.getMoves(side);
+        if (moves == 0) {
+            if (board.getMoves(other(side)) == 0) {
+                int diff = board.count(side) - board.count(other(side));
+                int empty = 64 - board.count('b') - board.count('w');
+                return diff > 0 ? diff + empty : diff < 0 ? diff - empty : 0;
+            }
+            return -solve(other(side));
+        }
+        int best = -INFINITY;
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            long flips = board.play(side, square);
+            best = Math.max(best, -solve(other(side)));
+            board.undo(side, square, flips);
+        }
+        return best;
+    }
+
+    /**
+     * Play 4 to 50 random moves from the start and store the result
+     *
+     * @return the player to move in the stored position
+     */
+    private static char randomPosition(Random random, Board[] boards, int index) {
+        while (true) {
+            Board board = new BitBoard();
+            char player = 'b';
+            int plies = 4 + random.nextInt(47);
+            for (int ply = 0; ply < plies; ply++) {
+                long moves = board.getMoves(player);
+                if (moves == 0) {
+                    player = other(player);
+                    moves = board.getMoves(player);
+                    if (moves == 0)
+                        break;
+                }
+                board.play(player, nthSquare(moves, random.nextInt(Long.bitCount(moves))));
+                player = other(player);
+            }
+            if (board.getMoves(player) != 0) {
+                boards[index] = board;
+                return player;
+            }
+        }
+    }
+
+    /**
+     * Unpruned root search, trying moves in the same order as the AI so that
+     * ties are broken the same way
+     */
+    private int search(Board position, int depth) {
+        board = position.copy();
+        int best = -INFINITY;
+        long moves = board.getMoves(player);
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            long flips = board.play(player, square);
+            int value = -minimax(other(player), depth - 1);
+            board.undo(player, square, flips);
+            rootValues[square] = value;
+            if (value > best) {
+                best = value;
+                bestSquare = square;
+            }
+        }
+        return best;
+    }
+
+    private int minimax(char side, int depth) {
+        nodes++;
+        if (depth <= 0)
+            return ai.evaluate(board, side);
+        long moves = board.getMoves(side);
+        if (moves == 0) {
+            if (board.getMoves(other(side)) == 0)
+                return ai.evaluate(board, side);
+            return -minimax(other(side), depth);
+        }
+        int best = -INFINITY;
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            long flips = board.play(side, square);
+            best = Math.max(best, -minimax(other(side), depth - 1));
+            board.undo(side, square, flips);
+        }
+        return best;
+    }
+
+    private static char other(char player) {
+        return player == 'w' ? 'b' : 'w';
+    }
+
+    private static int nthSquare(long moves, int n) {
+        for (int k = 0; k < n; k++)
+            moves &= moves - 1;
+        return Long.numberOfTrailingZeros(moves);
+    }
+
+    private static String boardString(Board board) {
+        String retStr = "\n";
+        for (char[] row : board.toArray()) {
+            for (char space : row)
+                retStr += space + " ";
+            retStr += "\n";
+        }
+        return retStr;
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.Arrays;
+
+/**
+ * What one AI.getMove did, for monitoring. Counters from the main searcher
+ * and every helper are added together; the per-iteration times, node counts
+ * and the principal variation are the main searcher's. The searchers count
+ * with plain fields of their own, so keeping metrics costs nothing during the
+ * search; this object is only assembled once the move is chosen.
+ *
+ * toString gives the move as one line of key=value fields for a log.
+ */
+public final class SearchMetrics {
+    private final String source; // search, book, solve or ponder
+    private final Pair move;
+    private final long nanos;
+    private int depth;
+    private long nodes, evaluations, tableProbes, tableHits;
+    private long[] cutoffs = new long[0];
+    private long[] iterationNanos = new long[0], iterationNodes = new long[0]; // index 0 is depth 1
+    private int[] principalVariation = new int[0];
+
+    SearchMetrics(String source, Pair move, int depth, long nodes, long nanos) {
+        this.source = source;
+        this.move = move;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Add a searcher's counters, and its iterations and principal variation if
+     * it is the main one
+     */
+    void add(Searcher searcher, boolean main) {
+        evaluations += searcher.getEvaluations();
+        tableProbes += searcher.getTableProbes();
+        tableHits += searcher.getTableHits();
+        long[] counts = searcher.getCutoffs();
+        int plies = counts.length;
+        while (plies > 0 && counts[plies - 1] == 0)
+            plies--;
+        if (plies > cutoffs.length)
+            cutoffs = Arrays.copyOf(cutoffs, plies);
+        for (int ply = 0; ply < plies; ply++)
+            cutoffs[ply] += counts[ply];
+        if (main) {
+            depth = searcher.getDepthReached();
+            iterationNanos = Arrays.copyOfRange(searcher.getIterationNanos(), 1, depth + 1);
+            iterationNodes = Arrays.copyOfRange(searcher.getIterationNodes(), 1, depth + 1);
+            principalVariation = searcher.principalVariation();
+        }
+    }
+
+    /**
+     * @return search for a normal search, book, solve for the exact endgame
+     *         solver, or ponder for a move searched on the opponent's time
+     */
+    public String getSource() {
+        return source;
+    }
+
+    public Pair getMove() {
+        return move;
+    }
+
+    /**
+     * @return deepest finished depth, empty squares for a solve
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return nodes of the search, for a ponder hit those of the background
+     *         search, done mostly on the opponent's time
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return heuristic calls at the leaves
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public long getTableProbes() {
+        return tableProbes;
+    }
+
+    /**
+     * @return probes that found an entry, deep enough to use or not
+     */
+    public long getTableHits() {
+        return tableHits;
+    }
+
+    /**
+     * @return beta cutoffs by ply from the root, the last entry being the
+     *         deepest ply with any
+     */
+    public long[] getCutoffs() {
+        return cutoffs.clone();
+    }
+
+    /**
+     * @return nanoseconds each depth took, from depth 1, 0 for depths not
+     *         searched on their own
+     */
+    public long[] getIterationNanos() {
+        return iterationNanos.clone();
+    }
+
+    /**
+     * @return squares of the expected line of play, starting with the move
+     */
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+
+    /**
+     * @return wall time of the whole move in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return nodes over wall time, 0 for a ponder hit, whose nodes were not
+     *         searched in that time
+     */
+    public double getNodesPerSecond() {
+        return nanos == 0 || source.equals("ponder") ? 0 : nodes * 1e9 / nanos;
+    }
+
+    /**
+     * Effective branching factor: the growth in nodes from the previous depth
+     * to the last one if both were searched, otherwise the nodes'
+     * depth-th root
+     */
+    public double getEffectiveBranchingFactor() {
+        int last = iterationNodes.length - 1;
+        if (last >= 1 && iterationNodes[last - 1] > 0)
+            return (double) iterationNodes[last] / iterationNodes[last - 1];
+        if (depth <= 0 || nodes <= 0)
+            return 0;
+        return Math.pow(nodes, 1.0 / depth);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        line.append("source=").append(source).append(" move=").append(move.getSquare()).append(" depth=")
+                .append(depth).append(" nodes=").append(nodes).append(" ms=")
+                .append(String.format("%.1f", nanos / 1e6)).append(" nps=")
+                .append(Math.round(getNodesPerSecond())).append(" evals=").append(evaluations)
+                .append(" tt_probes=").append(tableProbes).append(" tt_hits=").append(tableHits)
+                .append(" ebf=").append(String.format("%.2f", getEffectiveBranchingFactor())).append(" cutoffs=");
+        for (int ply = 0; ply < cutoffs.length; ply++)
+            line.append(ply > 0 ? "," : "").append(cutoffs[ply]);
+        line.append(" iteration_ms=");
+        for (int k = 0; k < iterationNanos.length; k++)
+            line.append(k > 0 ? "," : "").append(String.format("%.1f", iterationNanos[k] / 1e6));
+        line.append(" pv=");
+        for (int k = 0; k < principalVariation.length; k++)
+            line.append(k > 0 ? "," : "").append(principalVariation[k]);
+        return line.toString();
+    }
+}
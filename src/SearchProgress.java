@@ -0,0 +1,75 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snapshot of a search in progress, passed to the listener of
+ * AI.getMoveAsync. A search reports every time it proves a new best root move
+ * and every time it finishes a depth, so the depth of an unfinished report is
+ * the one being searched.
+ */
+public final class SearchProgress {
+    private final int depth;
+    private final Pair move;
+    private final int score;
+    private final long nodes;
+    private final boolean finished;
+    private final List<AnalysisLine> lines;
+
+    SearchProgress(int depth, Pair move, int score, long nodes, boolean finished, List<AnalysisLine> lines) {
+        this.depth = depth;
+        this.move = move;
+        this.score = score;
+        this.nodes = nodes;
+        this.finished = finished;
+        this.lines = lines;
+    }
+
+    /**
+     * @return depth in plies, or the number of empty squares for an exact solve
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the best move found so far
+     */
+    public Pair getMove() {
+        return move;
+    }
+
+    /**
+     * @return heuristic value of the move, the final disc differential for an
+     *         exact solve
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return nodes the main searcher has visited so far in this move
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return true if every root move has been searched to depth
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return the analysis lines of a finished depth, best first, empty for an
+     *         unfinished depth or when the AI is not analysing
+     */
+    public List<AnalysisLine> getLines() {
+        return Collections.unmodifiableList(lines);
+    }
+
+    @Override
+    public String toString() {
+        return "depth " + depth + (finished ? "" : "+") + ", best " + move + " (" + score + "), " + nodes + " nodes";
+    }
+}
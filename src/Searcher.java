@@ -0,0 +1,635 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * One thread's share of an AI search. Each searcher has its own working board
+ * and counters, while the transposition table is shared with the other
+ * searchers of the same AI. With several threads the helpers simply search the
+ * same position at staggered depths (Lazy SMP): they never report a move, but
+ * the results they store in the table let the main searcher cut off or order
+ * its own search sooner.
+ */
+class Searcher {
+    private static final int INFINITY = 1000000000; // beyond any heuristic value
+    private static final int HISTORY_LIMIT = 1 << 20; // halve a side's history beyond this
+    private static final int[] PRIORITY = new int[64]; // static square rank, 63 for the corners
+
+    static {
+        for (int k = 0; k < 64; k++)
+            PRIORITY[EndgameSolver.SQUARE_ORDER[k]] = 63 - k;
+    }
+
+    private final AI ai;
+    private final char player;
+    private final char opponent;
+    private final Board board; // working board, moves are made and unmade in place
+    private final PatternIndex patterns; // follows board when the AI scores with patterns
+    private final NeuralNet network; // set when the AI scores with a neural network
+    private final NeuralNet.Workspace workspace;
+    private final MoveList[] lists = new MoveList[65]; // by empty squares, each ply has its own
+    private final int[][] killers = new int[65][2]; // by empty squares, the last two cutoff moves
+    private final int[][] history = new int[2][64]; // cutoff credit by side (black, white) and square
+    private final long[] batchOwn = new long[64]; // children of a frontier node, AI's discs
+    private final long[] batchOpp = new long[64];
+    private final int[] batchSquares = new int[64];
+    private final float[] batchValues = new float[64];
+    private int batchBest; // best square of the last batch
+    private final ProbCut probCut; // selective search parameters, null for full width
+    private final double cutThreshold; // ProbCut confidence, in standard deviations
+    private final int aspirationWindow; // half width around the last iteration's score, 0 for none
+    private final int analysisLines; // root moves to score exactly, 1 for a plain search
+    private List<AnalysisLine> lines = new ArrayList<>(); // best root moves of the last finished depth
+    private int rootScore; // value of the last finished root search
+    private final TranspositionTable table;
+    private final long deadline; // System.nanoTime() at which to stop, 0 for none
+    private volatile boolean stopped; // ran out of time or stopped by the AI
+    private long nodes;
+    private int depthReached;
+    private int bestMove = TranspositionTable.NO_MOVE; // of the last fully searched depth
+    private HashMap<Pair, Integer> scores = new HashMap<>(); // root scores of the last finished depth
+    private Consumer<SearchProgress> listener; // called on this searcher's thread, may be null
+    private final int rootEmpties;
+    private long evaluations; // leaf values computed, batched ones included
+    private long tableProbes, tableHits;
+    private final long[] cutoffs = new long[64]; // beta cutoffs by moves played since the root
+    private final long[] iterationNanos = new long[65]; // by depth, of finished iterations only
+    private final long[] iterationNodes = new long[65];
+
+    /**
+     * @param position
+     *            Position to search with player to move, copied
+     * @param table
+     *            Shared transposition table, may be null
+     */
+    Searcher(AI ai, char player, Board position, TranspositionTable table, long deadline) {
+        this.ai = ai;
+        this.player = player;
+        opponent = player == 'w' ? 'b' : 'w';
+        board = position.copy();
+        patterns = ai.usesPatterns() ? new PatternIndex() : null;
+        if (patterns != null)
+            patterns.set(board);
+        network = ai.getNetwork();
+        workspace = network != null ? network.newWorkspace(64) : null;
+        this.table = table;
+        this.deadline = deadline;
+        probCut = ai.getProbCut();
+        cutThreshold = ai.getProbCutThreshold();
+        analysisLines = ai.getAnalysisLines();
+        aspirationWindow = analysisLines > 1 ? 0 : ai.getAspirationWindow(); // lines need full windows
+        rootEmpties = Long.bitCount(~(board.getDiscs('b') | board.getDiscs('w')));
+        for (int empties = 0; empties < lists.length; empties++) {
+            lists[empties] = new MoveList();
+            Arrays.fill(killers[empties], TranspositionTable.NO_MOVE);
+        }
+    }
+
+    /**
+     * Search every root move to depth
+     *
+     * @return the best root move
+     */
+    int search(int depth) {
+        long start = System.nanoTime(), startNodes = nodes;
+        long plays = board.getMoves(player);
+        int best = searchRoot(depth, plays, firstMove(plays, Zobrist.key(board.getHash(), player)), -INFINITY,
+                INFINITY);
+        if (!stopped) {
+            depthReached = depth;
+            bestMove = best;
+            iterationNanos[depth] = System.nanoTime() - start;
+            iterationNodes[depth] = nodes - startNodes;
+            report(depth, best, rootScore, true);
+        }
+        return best;
+    }
+
+    /**
+     * Iterative deepening. Deepens one ply at a time, starting each iteration
+     * from the previous iteration's best move, until stopped or until every
+     * line reaches the end of the game.
+     *
+     * With an aspiration window, every iteration after the first searches only
+     * a window around the previous iteration's score, which cuts off more. If
+     * the score falls outside it, the failing side of the window is widened
+     * (twice as far each time) and the iteration searched again.
+     *
+     * @param depth
+     *            first depth to search
+     * @return the best root move of the last fully searched depth
+     */
+    int deepen(int depth) {
+        return deepen(depth, 64);
+    }
+
+    /**
+     * Iterative deepening that also stops after maxDepth
+     *
+     * @return the best root move of the last fully searched depth
+     */
+    int deepen(int depth, int maxDepth) {
+        long plays = board.getMoves(player);
+        int best = firstMove(plays, Zobrist.key(board.getHash(), player));
+        int empty = Long.bitCount(~(board.getDiscs('b') | board.getDiscs('w')));
+        // past the number of empty squares every line has reached the end of the game
+        for (int iteration = depth; iteration <= Math.min(empty, maxDepth); iteration++) {
+            long start = System.nanoTime(), startNodes = nodes;
+            long window = aspirationWindow;
+            int alpha = -INFINITY, beta = INFINITY;
+            if (window > 0 && iteration > depth) {
+                alpha = (int) Math.max(-INFINITY, rootScore - window);
+                beta = (int) Math.min(INFINITY, rootScore + window);
+            }
+            int move = searchRoot(iteration, plays, best, alpha, beta);
+            while (!stopped && (rootScore <= alpha && alpha > -INFINITY || rootScore >= beta && beta < INFINITY)) {
+                window *= 2;
+                if (rootScore <= alpha) {
+                    alpha = (int) Math.max(-INFINITY, rootScore - window);
+                } else {
+                    beta = (int) Math.min(INFINITY, rootScore + window);
+                    best = move; // already proved better than the old window
+                }
+                move = searchRoot(iteration, plays, best, alpha, beta);
+            }
+            if (stopped)
+                break;
+            best = move;
+            depthReached = iteration;
+            bestMove = best;
+            iterationNanos[iteration] = System.nanoTime() - start;
+            iterationNodes[iteration] = nodes - startNodes;
+            report(iteration, best, rootScore, true);
+        }
+        return best;
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Report progress to listener: every new best root move and every finished
+     * depth
+     */
+    void setListener(Consumer<SearchProgress> listener) {
+        this.listener = listener;
+    }
+
+    private void report(int depth, int move, int score, boolean finished) {
+        if (listener != null)
+            listener.accept(new SearchProgress(depth, Pair.of(move), score, nodes, finished,
+                    finished ? lines : List.of()));
+    }
+
+    long getNodes() {
+        return nodes;
+    }
+
+    int getDepthReached() {
+        return depthReached;
+    }
+
+    /**
+     * @return the best root move of the last fully searched depth, NO_MOVE if
+     *         no depth was finished
+     */
+    int getBestMove() {
+        return bestMove;
+    }
+
+    HashMap<Pair, Integer> getScores() {
+        return scores;
+    }
+
+    long getEvaluations() {
+        return evaluations;
+    }
+
+    long getTableProbes() {
+        return tableProbes;
+    }
+
+    long getTableHits() {
+        return tableHits;
+    }
+
+    /**
+     * @return beta cutoffs by ply, counted as moves played since the root so
+     *         passes do not count
+     */
+    long[] getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * @return time each finished depth took, by depth
+     */
+    long[] getIterationNanos() {
+        return iterationNanos;
+    }
+
+    long[] getIterationNodes() {
+        return iterationNodes;
+    }
+
+    /**
+     * Principal variation of the last finished depth
+     *
+     * @return at most depthReached squares, starting with the best root move
+     */
+    int[] principalVariation() {
+        if (bestMove == TranspositionTable.NO_MOVE)
+            return new int[0];
+        return principalVariation(bestMove, depthReached);
+    }
+
+    /**
+     * Line of play after a root move: the move, then the best move the table
+     * holds for each following position, as long as the table has one and it
+     * is legal. Passes are skipped.
+     *
+     * @return at most length squares
+     */
+    private int[] principalVariation(int move, int length) {
+        Board line = board.copy();
+        int[] pv = new int[length];
+        int played = 0;
+        char side = player;
+        while (played < length) {
+            line.play(side, move);
+            pv[played++] = move;
+            side = side == 'w' ? 'b' : 'w';
+            long moves = line.getMoves(side);
+            if (moves == 0) {
+                side = side == 'w' ? 'b' : 'w';
+                moves = line.getMoves(side);
+            }
+            if (moves == 0 || table == null)
+                break;
+            move = TranspositionTable.move(table.probe(Zobrist.key(line.getHash(), side)));
+            if (move >= 64 || (moves & (1L << move)) == 0)
+                break;
+        }
+        return Arrays.copyOf(pv, played);
+    }
+
+    /**
+     * @return the best root moves of the last finished depth, best first,
+     *         empty unless the AI asked for analysis lines
+     */
+    List<AnalysisLine> getLines() {
+        return lines;
+    }
+
+    /**
+     * First layer minimax The real work occurs in negamax
+     *
+     * @param plays
+     *            Bit mask of the root moves
+     * @param first
+     *            Root move to search first
+     * @param alpha
+     *            Lower end of the window, -INFINITY for a full search
+     * @param beta
+     *            Upper end of the window, INFINITY for a full search
+     * @return The best root move, only meaningful if the search was not stopped,
+     *         its value in rootScore
+     */
+    private int searchRoot(int depth, long plays, int first, int alpha, int beta) {
+        HashMap<Pair, Integer> scores = new HashMap<>();
+        int max = -INFINITY;
+        int check;
+        int best = first;
+        long key = Zobrist.key(board.getHash(), player);
+        int[] topMoves = analysisLines > 1 ? new int[analysisLines] : null; // best first
+        int[] topScores = analysisLines > 1 ? new int[analysisLines] : null;
+        int found = 0;
+        for (int square = first; square < 64; square = Long.numberOfTrailingZeros(plays)) {
+            plays &= ~(1L << square);
+            long flips = board.play(player, square);
+            if (patterns != null)
+                patterns.play(player, square, flips);
+            // the best value so far is the lower bound for every later move, so
+            // those only need to prove they are no better; with analysis lines
+            // the bound is the worst of the lines instead, so every move that
+            // makes the lines gets an exact score
+            int lower = Math.max(alpha, max);
+            if (topMoves != null)
+                lower = found < analysisLines ? alpha : Math.max(alpha, topScores[found - 1]);
+            check = -negamax(opponent, depth - 1, -beta, -lower);
+            board.undo(player, square, flips);
+            if (patterns != null)
+                patterns.undo(player, square, flips);
+            if (stopped)
+                return best;
+            if (topMoves == null) {
+                scores.put(Pair.of(square), check);
+            } else if (check > lower) { // exact, into the lines
+                if (found == analysisLines)
+                    scores.remove(Pair.of(topMoves[--found]));
+                int k = found++;
+                for (; k > 0 && topScores[k - 1] < check; k--) {
+                    topMoves[k] = topMoves[k - 1];
+                    topScores[k] = topScores[k - 1];
+                }
+                topMoves[k] = square;
+                topScores[k] = check;
+                scores.put(Pair.of(square), check);
+            }
+            if (check > max) {
+                max = check;
+                best = square;
+                if (max >= beta) { // outside the window, the caller searches again
+                    cutoffs[0]++;
+                    break;
+                }
+                if (max > alpha)
+                    report(depth, best, max, false);
+            }
+        }
+        // track heuristics of the finished search
+        this.scores = scores;
+        rootScore = max;
+        if (topMoves != null) {
+            List<AnalysisLine> lines = new ArrayList<>(found);
+            for (int k = 0; k < found; k++)
+                lines.add(new AnalysisLine(Pair.of(topMoves[k]), topScores[k], principalVariation(topMoves[k], depth)));
+            this.lines = lines;
+        }
+        if (table != null) {
+            int bound = max <= alpha ? TranspositionTable.UPPER
+                    : max >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(key, depth, bound, max, best);
+        }
+        return best;
+    }
+
+    /**
+     * Recursive negamax with alpha-beta pruning. Every node is scored from the
+     * point of view of the side to move, so max and min nodes are the same code
+     * with the window negated and swapped on the way down. A side without moves
+     * passes, and the game is over when neither side can move.
+     *
+     * Children are visited one at a time by making the move on the working board,
+     * recursing and undoing it again. The undo record is just the placed square
+     * and the flip mask, both kept in locals, so no boards are copied. Moves come
+     * from a preallocated MoveList per number of empty squares, which cannot
+     * clash along a line of play because every move fills a square.
+     *
+     * With a neural network heuristic, a node one ply above the leaves evaluates
+     * its first child on its own, which may already cut the node off, and the
+     * rest together in one batch rather than one by one.
+     *
+     * Results are stored in the transposition table. A stored result at least as
+     * deep as this node ends the search here if its bound allows, and otherwise
+     * its best move is tried first. The other moves follow in the order given by
+     * orderMoves.
+     *
+     * @param side
+     *            Player to move
+     * @param depth
+     *            Plies left to search
+     * @param alpha
+     *            Score side is already guaranteed elsewhere
+     * @param beta
+     *            Score the other side is already guaranteed elsewhere
+     * @return nodeValue, exact if it lies inside the window, otherwise a bound
+     */
+    private int negamax(char side, int depth, int alpha, int beta) {
+        if ((++nodes & 1023) == 0 && deadline != 0 && System.nanoTime() > deadline)
+            stopped = true;
+        if (stopped) // unwind, the caller throws this iteration away
+            return 0;
+        if (depth <= 0)
+            return evaluate(side);
+        char other = side == player ? opponent : player;
+        long key = Zobrist.key(board.getHash(), side);
+        int hashMove = TranspositionTable.NO_MOVE;
+        if (table != null) {
+            long entry = table.probe(key);
+            tableProbes++;
+            if (entry != 0)
+                tableHits++;
+            if (entry != 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha))
+                    return score;
+            }
+            if (entry != 0)
+                hashMove = TranspositionTable.move(entry);
+        }
+        int empties = 64 - Long.bitCount(board.getDiscs('b') | board.getDiscs('w'));
+        if (probCut != null && depth >= ProbCut.MIN_DEPTH) {
+            int cut = probCut(side, depth, alpha, beta, empties);
+            if (cut != INFINITY)
+                return cut;
+        }
+        MoveList list = lists[empties];
+        int count = board.getMoves(side, list);
+        if (count == 0) {
+            if (board.getMobility(other) == 0) // game over
+                return evaluate(side);
+            return -negamax(other, depth, -beta, -alpha); // pass
+        }
+        int alphaOrig = alpha;
+        int nodeVal = -INFINITY;
+        int best = TranspositionTable.NO_MOVE;
+        if (depth == 1 && network != null) {
+            orderMoves(side, list, empties, hashMove);
+            nodeVal = evaluateChildren(side, list, beta);
+            best = batchBest;
+            if (nodeVal >= beta) {
+                cutoffs[rootEmpties - empties]++;
+                recordCutoff(side, best, depth, empties);
+            }
+        } else {
+            orderMoves(side, list, empties, hashMove);
+            for (int k = 0; k < count; k++) {
+                int square = list.getSquare(k);
+                long flips = list.getFlips(k);
+                board.play(side, square, flips);
+                if (patterns != null)
+                    patterns.play(side, square, flips);
+                int tempVal = -negamax(other, depth - 1, -beta, -alpha);
+                board.undo(side, square, flips);
+                if (patterns != null)
+                    patterns.undo(side, square, flips);
+                if (stopped)
+                    return 0;
+                if (tempVal > nodeVal) {
+                    nodeVal = tempVal;
+                    best = square;
+                    if (nodeVal > alpha)
+                        alpha = nodeVal;
+                    if (alpha >= beta) { // the other side will never allow this node
+                        cutoffs[rootEmpties - empties]++;
+                        recordCutoff(side, square, depth, empties);
+                        break; // prune
+                    }
+                }
+            }
+        }
+        if (table != null) {
+            int bound = nodeVal <= alphaOrig ? TranspositionTable.UPPER
+                    : nodeVal >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(key, depth, bound, nodeVal, best);
+        }
+        return nodeVal;
+    }
+
+    /**
+     * Multi-ProbCut. A shallow search predicts the deep result through the
+     * fitted line deep = slope * shallow + intercept, whose error has the fitted
+     * standard deviation. If the shallow value is far enough beyond the window
+     * that the deep search would land outside it with the configured
+     * confidence, the node is cut without searching it deeply. Each depth and
+     * game stage has its own fit, and both tests are null-window searches.
+     *
+     * @return the bound to return for a cut node, INFINITY if there is no cut
+     */
+    private int probCut(char side, int depth, int alpha, int beta, int empties) {
+        int stage = ProbCut.stage(empties);
+        if (!probCut.isFitted(stage, depth))
+            return INFINITY;
+        int shallow = ProbCut.shallowDepth(depth);
+        double margin = cutThreshold * probCut.getSigma(stage, depth);
+        double slope = probCut.getSlope(stage, depth), intercept = probCut.getIntercept(stage, depth);
+        // shallow value at which the deep value is likely at least beta
+        double high = Math.ceil((beta + margin - intercept) / slope);
+        if (high < INFINITY && beta < INFINITY) {
+            int bound = (int) Math.max(high, -INFINITY + 1);
+            if (negamax(side, shallow, bound - 1, bound) >= bound)
+                return beta;
+        }
+        // shallow value at which the deep value is likely at most alpha
+        double low = Math.floor((alpha - margin - intercept) / slope);
+        if (low > -INFINITY && alpha > -INFINITY) {
+            int bound = (int) Math.min(low, INFINITY - 1);
+            if (negamax(side, shallow, bound, bound + 1) <= bound)
+                return alpha;
+        }
+        return INFINITY;
+    }
+
+    /**
+     * Sort list into the order to search it: the hash move, then this ply's two
+     * killer moves (moves that recently caused a cutoff among the siblings of
+     * this node), then by history (how often and how deep each square caused a
+     * cutoff anywhere for this side), and finally by static square priority,
+     * corners first and X-squares last
+     */
+    private void orderMoves(char side, MoveList list, int empties, int hashMove) {
+        int[] sideHistory = history[side == 'b' ? 0 : 1];
+        int[] plyKillers = killers[empties];
+        for (int k = 0; k < list.size(); k++) {
+            int square = list.getSquare(k);
+            if (square == plyKillers[0])
+                list.setKey(k, Integer.MAX_VALUE);
+            else if (square == plyKillers[1])
+                list.setKey(k, Integer.MAX_VALUE - 1);
+            else
+                list.setKey(k, (sideHistory[square] << 6) | PRIORITY[square]);
+        }
+        list.sort();
+        list.moveToFront(hashMove);
+    }
+
+    /**
+     * Credit square with a cutoff for the killer and history tables
+     */
+    private void recordCutoff(char side, int square, int depth, int empties) {
+        int[] plyKillers = killers[empties];
+        if (plyKillers[0] != square) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = square;
+        }
+        int[] sideHistory = history[side == 'b' ? 0 : 1];
+        sideHistory[square] += depth * depth;
+        if (sideHistory[square] > HISTORY_LIMIT) { // keep recent cutoffs weighing more
+            for (int k = 0; k < 64; k++)
+                sideHistory[k] >>= 1;
+        }
+    }
+
+    /**
+     * Leaf value for side, from the incrementally kept pattern codes if there
+     * are any
+     */
+    private int evaluate(char side) {
+        evaluations++;
+        if (patterns != null)
+            return ai.evaluate(patterns, side);
+        if (network != null) {
+            int value = network.score(board.getDiscs(player), board.getDiscs(opponent), workspace);
+            return side == player ? value : -value;
+        }
+        return ai.evaluate(board, side);
+    }
+
+    /**
+     * Score the children of a node one ply above the leaves with the network.
+     * The first child in move order is evaluated alone, and if it reaches beta
+     * the node is cut off there, as in the ordinary loop. Otherwise the others
+     * all have to be evaluated to find the node's value, and are scored in a
+     * single batch, far cheaper than the same positions one at a time.
+     *
+     * @return the node's value for side, a lower bound if it reaches beta,
+     *         with its best square in batchBest
+     */
+    private int evaluateChildren(char side, MoveList list, int beta) {
+        int count = list.size();
+        int first = list.getSquare(0);
+        long firstFlips = list.getFlips(0);
+        board.play(side, first, firstFlips);
+        int nodeVal = network.score(board.getDiscs(player), board.getDiscs(opponent), workspace);
+        board.undo(side, first, firstFlips);
+        if (side != player)
+            nodeVal = -nodeVal;
+        nodes++;
+        evaluations++;
+        batchBest = first;
+        if (nodeVal >= beta || count == 1)
+            return nodeVal;
+        count = 0;
+        for (int k = 1; k < list.size(); k++) {
+            int square = list.getSquare(k);
+            long flips = list.getFlips(k);
+            board.play(side, square, flips);
+            batchOwn[count] = board.getDiscs(player);
+            batchOpp[count] = board.getDiscs(opponent);
+            batchSquares[count++] = square;
+            board.undo(side, square, flips);
+        }
+        nodes += count;
+        evaluations += count;
+        network.evaluate(batchOwn, batchOpp, count, batchValues, workspace);
+        for (int k = 0; k < count; k++) {
+            int value = Math.round(batchValues[k] * 100);
+            if (side != player)
+                value = -value;
+            if (value > nodeVal) {
+                nodeVal = value;
+                batchBest = batchSquares[k];
+            }
+        }
+        return nodeVal;
+    }
+
+    /**
+     * @return the stored best move for key if it is one of moves, otherwise the
+     *         lowest square in moves
+     */
+    private int firstMove(long moves, long key) {
+        if (table != null) {
+            int hashMove = TranspositionTable.move(table.probe(key));
+            if (hashMove < 64 && (moves & (1L << hashMove)) != 0)
+                return hashMove;
+        }
+        return Long.numberOfTrailingZeros(moves);
+    }
+}
@@ -0,0 +1,119 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test client for the GameServer. Opens a few connections and plays many
+ * games on each at once, the server's AI playing both sides, by answering
+ * every reply with the next command for the same game. Reports games and
+ * moves per second and how long each GO waited for its reply, which shows
+ * whether games are served fairly while the workers are all busy.
+ *
+ * Without a port it starts a server in this process on a free port.
+ *
+ * Usage: java ServerLoad [games] [connections] [heuristic] [depth] [port]
+ */
+public class ServerLoad {
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int select = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        GameServer local = null;
+        int port;
+        if (args.length > 4) {
+            port = Integer.parseInt(args[4]);
+        } else {
+            local = new GameServer(0, Runtime.getRuntime().availableProcessors(), games);
+            port = local.getPort();
+            Thread server = new Thread(local::serve, "Server");
+            server.setDaemon(true);
+            server.start();
+        }
+
+        AtomicInteger moves = new AtomicInteger();
+        long[][] latencies = new long[connections][];
+        Thread[] clients = new Thread[connections];
+        long start = System.nanoTime();
+        for (int c = 0; c < connections; c++) {
+            int count = games / connections + (c < games % connections ? 1 : 0);
+            int index = c;
+            clients[c] = new Thread(() -> latencies[index] = play(port, count, select, depth, moves));
+            clients[c].start();
+        }
+        for (Thread client : clients)
+            client.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%d games, %d moves in %.1f s: %.1f games/s, %.0f moves/s%n", games, moves.get(), seconds,
+                games / seconds, moves.get() / seconds);
+        if (all.length > 0)
+            System.out.printf("GO latency ms: median %.1f, 99th %.1f, max %.1f%n", all[all.length / 2] / 1e6,
+                    all[(int) (all.length * 0.99)] / 1e6, all[all.length - 1] / 1e6);
+        if (local != null) {
+            System.out.println("Evaluation cache: " + EvalCache.shared());
+            local.close();
+        }
+    }
+
+    /**
+     * Play count games to the end over one connection
+     *
+     * @return the latency of every GO, in nanoseconds
+     */
+    private static long[] play(int port, int count, int select, int depth, AtomicInteger moves) {
+        long[] latencies = new long[count * 64];
+        int measured = 0;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+            Map<Long, Long> sent = new HashMap<>(); // GO send time by session
+            Set<Long> closing = new HashSet<>(); // sessions sent CLOSE, whose OK is not a new game
+            for (int g = 0; g < count; g++)
+                out.println("NEW " + select + " " + depth);
+            int finished = 0;
+            while (finished < count) {
+                String line = in.readLine();
+                if (line == null)
+                    throw new IOException("Server closed the connection");
+                String[] words = line.split(" ");
+                if (!words[0].equals("OK"))
+                    throw new IOException("Server answered " + line);
+                long id = Long.parseLong(words[1]);
+                if (words.length == 2) { // a new game, or a closed one
+                    if (!closing.remove(id)) {
+                        sent.put(id, System.nanoTime());
+                        out.println(id + " GO");
+                    }
+                    continue;
+                }
+                Long time = sent.remove(id);
+                latencies[measured++] = System.nanoTime() - time;
+                moves.incrementAndGet();
+                if (words[3].equals("end")) {
+                    finished++;
+                    closing.add(id);
+                    out.println(id + " CLOSE");
+                } else {
+                    sent.put(id, System.nanoTime());
+                    out.println(id + " GO");
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return Arrays.copyOf(latencies, measured);
+    }
+}
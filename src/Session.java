@@ -0,0 +1,87 @@
+import java.util.ArrayDeque;
+
+/**
+ * One game hosted by the GameServer: a board, the side to move and an AI for
+ * each colour, created the first time that colour asks for a move. Sessions
+ * share nothing, so any number can be played at once.
+ *
+ * A session is only ever touched by one thread at a time. Its commands wait in
+ * pending and the Dispatcher runs them one after another.
+ */
+class Session {
+    private static final int HASH_MB = 1; // per AI, sessions are many and short
+
+    final long id;
+    final ArrayDeque<Runnable> pending = new ArrayDeque<>(); // guarded by this
+    boolean scheduled; // a worker has this session's next command, guarded by this
+    private final Board board = new BitBoard();
+    private char player = 'b';
+    private boolean over;
+    private final int select, depth;
+    private final AI[] ai = new AI[2]; // black, white
+
+    Session(long id, int select, int depth) {
+        this.id = id;
+        this.select = select;
+        this.depth = depth;
+    }
+
+    /**
+     * Play square for the side to move
+     *
+     * @return the reply to send
+     */
+    String move(int square) {
+        if (over)
+            return "ERR " + id + " game over";
+        if (square < 0 || square > 63 || (board.getMoves(player) & (1L << square)) == 0)
+            return "ERR " + id + " illegal move " + square;
+        return play(square);
+    }
+
+    /**
+     * Let the AI choose and play the move for the side to move
+     *
+     * @return the reply to send
+     */
+    String go() {
+        if (over)
+            return "ERR " + id + " game over";
+        int index = player == 'b' ? 0 : 1;
+        if (ai[index] == null) {
+            ai[index] = new AI(player, null, select);
+            ai[index].setDepth(depth);
+            ai[index].setHashSize(HASH_MB);
+        }
+        return play(ai[index].getMove(board).getSquare());
+    }
+
+    /**
+     * @return the position as 64 squares row by row (b, w or -) and the side
+     *         to move, or end
+     */
+    String board() {
+        StringBuilder builder = new StringBuilder("OK ").append(id).append(' ');
+        long black = board.getDiscs('b'), white = board.getDiscs('w');
+        for (int square = 0; square < 64; square++)
+            builder.append((black >>> square & 1) != 0 ? 'b' : (white >>> square & 1) != 0 ? 'w' : '-');
+        return builder.append(' ').append(over ? "end" : String.valueOf(player)).toString();
+    }
+
+    /**
+     * Make a legal move, then pass for the next side if it cannot move
+     *
+     * @return OK, the session, the square and the side to move next or end
+     *         with the final disc differential for black
+     */
+    private String play(int square) {
+        board.play(player, square);
+        char other = player == 'w' ? 'b' : 'w';
+        if (board.getMoves(other) != 0)
+            player = other;
+        else if (board.getMoves(player) == 0)
+            over = true;
+        String next = over ? "end " + (board.count('b') - board.count('w')) : String.valueOf(player);
+        return "OK " + id + " " + square + " " + next;
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.Random;
+
+/**
+ * Speedup report for multi-threaded search. Searches the same set of positions
+ * to a fixed depth with 1, 2, 4, ... threads (up to the number of cores, or
+ * the given maximum) and prints the time, node rate and speedup over a single
+ * thread. Every run starts with an empty transposition table.
+ *
+ * Usage: java SmpBench [max threads] [depth] [positions] [seed]
+ */
+public class SmpBench {
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+        int positions = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        Random random = new Random(seed);
+        Board[] boards = new Board[positions];
+        char[] players = new char[positions];
+        for (int p = 0; p < positions; p++) {
+            Board board = new BitBoard();
+            char player = 'b';
+            int plies = 10 + random.nextInt(20);
+            for (int ply = 0; ply < plies; ply++) {
+                long moves = board.getMoves(player);
+                if (moves == 0)
+                    break;
+                int n = random.nextInt(Long.bitCount(moves));
+                for (int k = 0; k < n; k++)
+                    moves &= moves - 1;
+                board.play(player, Long.numberOfTrailingZeros(moves));
+                player = player == 'w' ? 'b' : 'w';
+            }
+            boards[p] = board;
+            players[p] = player;
+        }
+
+        for (int p = 0; p < positions; p++) { // warm up the JIT before timing anything
+            AI ai = new AI(players[p], null, 2);
+            ai.setDepth(depth - 2);
+            ai.getMove(boards[p]);
+        }
+
+        System.out.println("threads  depth  time ms     nodes  knodes/s  speedup");
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long nodes = 0;
+            long start = System.nanoTime();
+            for (int p = 0; p < positions; p++) {
+                AI ai = new AI(players[p], null, 2);
+                ai.setDepth(depth);
+                ai.setThreads(threads);
+                ai.getMove(boards[p]);
+                nodes += ai.getNodes();
+                ai.setThreads(1); // release the helper threads
+            }
+            double millis = (System.nanoTime() - start) / 1e6;
+            if (threads == 1)
+                baseline = millis;
+            System.out.printf("%7d %6d %8.0f %9d %9.0f %8.2f%n", threads, depth, millis, nodes, nodes / millis,
+                    baseline / millis);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless match between two engine settings. Games run without a GUI or a
+ * Game, many at a time on a thread pool. Games are played in pairs from the
+ * same opening with the colours swapped, so neither engine profits from a
+ * lucky opening or from moving first.
+ *
+ * An engine is written select:depth[:milliseconds[:options]], for example 2:5
+ * for the medium heuristic at depth 5 or 4:20:100 for the pattern heuristic
+ * with 100 ms per move. Options are comma separated: mpc=file searches with
+ * Multi-ProbCut parameters from file, t=threshold sets its confidence and
+ * aw=window sets the aspiration window, as in 2:20:100:mpc=h2.mpc,aw=20000,
+ * and cache=0 evaluates without the shared evaluation cache.
+ * Openings are either a number of random moves or the name of an
+ * opening book file, in which case each game follows randomly chosen book
+ * lines for as long as they last.
+ *
+ * Usage: java Tournament [engine A] [engine B] [game pairs] [threads]
+ * [random plies or book file] [seed]
+ */
+public class Tournament {
+    private static final int HASH_MB = 4; // per engine, there are four per thread
+
+    private final Engine engineA, engineB;
+    private final int randomPlies; // 0 when playing from the book
+    private final OpeningBook book;
+    private final ThreadLocal<AI[]> engines = new ThreadLocal<>(); // A black, A white, B black, B white
+
+    /**
+     * One side's settings
+     */
+    private static class Engine {
+        final String spec;
+        final int select, depth;
+        final long millis;
+        ProbCut probCut; // shared by every AI of this engine, it is only read
+        double threshold = 1.5;
+        int window;
+        boolean cache = true;
+
+        Engine(String spec) throws IOException {
+            this.spec = spec;
+            String[] parts = spec.split(":");
+            select = Integer.parseInt(parts[0]);
+            depth = parts.length > 1 ? Integer.parseInt(parts[1]) : 5;
+            millis = parts.length > 2 ? Long.parseLong(parts[2]) : 0;
+            if (parts.length > 3) {
+                for (String option : parts[3].split(",")) {
+                    String[] pair = option.split("=", 2);
+                    if (pair[0].equals("mpc"))
+                        probCut = ProbCut.load(Paths.get(pair[1]));
+                    else if (pair[0].equals("t"))
+                        threshold = Double.parseDouble(pair[1]);
+                    else if (pair[0].equals("aw"))
+                        window = Integer.parseInt(pair[1]);
+                    else if (pair[0].equals("cache"))
+                        cache = !pair[1].equals("0");
+                    else
+                        throw new IllegalArgumentException("Unknown engine option " + option);
+                }
+            }
+        }
+
+        AI create(char player) {
+            AI ai = new AI(player, null, select);
+            ai.setDepth(depth);
+            ai.setTimeLimit(millis);
+            ai.setHashSize(HASH_MB);
+            ai.setProbCut(probCut, threshold);
+            ai.setAspirationWindow(window);
+            if (!cache)
+                ai.setEvalCache(null);
+            return ai;
+        }
+
+        @Override
+        public String toString() {
+            return spec;
+        }
+    }
+
+    private Tournament(Engine engineA, Engine engineB, int randomPlies, OpeningBook book) {
+        this.engineA = engineA;
+        this.engineB = engineB;
+        this.randomPlies = randomPlies;
+        this.book = book;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Engine engineA = new Engine(args.length > 0 ? args[0] : "2:4");
+        Engine engineB = new Engine(args.length > 1 ? args[1] : "1:4");
+        int pairs = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        String openings = args.length > 4 ? args[4] : "8";
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+
+        Tournament tournament = openings.matches("\\d+")
+                ? new Tournament(engineA, engineB, Integer.parseInt(openings), null)
+                : new Tournament(engineA, engineB, 0, OpeningBook.open(Paths.get(openings)));
+        System.out.println("A = " + engineA + ", B = " + engineB + ", " + 2 * pairs + " games on " + threads
+                + " threads");
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<int[]> results = new ExecutorCompletionService<>(pool);
+        Random random = new Random(seed);
+        long start = System.nanoTime();
+        for (int pair = 0; pair < pairs; pair++) {
+            long pairSeed = random.nextLong();
+            results.submit(() -> tournament.playPair(pairSeed));
+        }
+
+        int wins = 0, draws = 0, losses = 0;
+        double sum = 0, squares = 0; // of A's per game score, for the error margin
+        for (int pair = 0; pair < pairs; pair++) {
+            int[] diffs;
+            try {
+                diffs = results.take().get();
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+                continue;
+            }
+            for (int diff : diffs) {
+                double score = diff > 0 ? 1 : diff == 0 ? 0.5 : 0;
+                if (diff > 0)
+                    wins++;
+                else if (diff == 0)
+                    draws++;
+                else
+                    losses++;
+                sum += score;
+                squares += score * score;
+            }
+            if ((pair + 1) % Math.max(1, pairs / 10) == 0 && pair + 1 < pairs)
+                System.out.printf("%d games: +%d =%d -%d%n", wins + draws + losses, wins, draws, losses);
+        }
+        pool.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int games = wins + draws + losses;
+        if (games == 0) {
+            System.err.println("Every game pair failed, no result");
+            System.exit(1);
+        }
+        double mean = sum / games;
+        double deviation = Math.sqrt(Math.max(0, squares / games - mean * mean) / games);
+        System.out.printf("A vs B: +%d =%d -%d, score %.1f%%%n", wins, draws, losses, 100 * mean);
+        System.out.printf("Elo difference %.0f +/- %.0f (95%%)%n", elo(mean),
+                (elo(Math.min(mean + 1.96 * deviation, 0.9999)) - elo(Math.max(mean - 1.96 * deviation, 0.0001))) / 2);
+        System.out.printf("%.1f seconds, %.2f games/s%n", seconds, games / seconds);
+        System.out.println("Evaluation cache: " + EvalCache.shared());
+    }
+
+    /**
+     * Elo difference that predicts the given expected score
+     */
+    private static double elo(double score) {
+        score = Math.min(Math.max(score, 0.0001), 0.9999);
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * Play one opening twice, once with A as black and once as white
+     *
+     * @return A's final disc differential in each game
+     */
+    private int[] playPair(long seed) {
+        AI[] ai = engines.get();
+        if (ai == null) {
+            ai = new AI[] { engineA.create('b'), engineA.create('w'), engineB.create('b'), engineB.create('w') };
+            engines.set(ai);
+        }
+        Random random = new Random(seed);
+        Board opening = new BitBoard();
+        char player = opening(opening, random);
+        int first = play(opening.copy(), player, ai[0], ai[3]); // A is black
+        int second = play(opening.copy(), player, ai[2], ai[1]); // A is white
+        return new int[] { first, -second };
+    }
+
+    /**
+     * Play out the opening moves on board
+     *
+     * @return the player to move after the opening
+     */
+    private char opening(Board board, Random random) {
+        char player = 'b';
+        for (int ply = 0; book != null || ply < randomPlies; ply++) {
+            long moves = board.getMoves(player);
+            if (moves == 0)
+                break;
+            char other = player == 'w' ? 'b' : 'w';
+            if (book != null) { // only moves that stay in the book
+                long booked = 0;
+                for (long rest = moves; rest != 0; rest &= rest - 1) {
+                    int square = Long.numberOfTrailingZeros(rest);
+                    long flips = board.play(player, square);
+                    if (book.move(board, other) >= 0)
+                        booked |= 1L << square;
+                    board.undo(player, square, flips);
+                }
+                if (booked == 0)
+                    break;
+                moves = booked;
+            }
+            int n = random.nextInt(Long.bitCount(moves));
+            for (int k = 0; k < n; k++)
+                moves &= moves - 1;
+            board.play(player, Long.numberOfTrailingZeros(moves));
+            player = other;
+        }
+        return player;
+    }
+
+    /**
+     * Play a game to the end
+     *
+     * @return black's final disc differential
+     */
+    private static int play(Board board, char player, AI black, AI white) {
+        black.clearHash(); // the AIs are reused, but games must not share search results
+        white.clearHash();
+        while (true) {
+            long moves = board.getMoves(player);
+            if (moves == 0) {
+                player = player == 'w' ? 'b' : 'w';
+                if (board.getMoves(player) == 0)
+                    break;
+                continue;
+            }
+            Pair move = (player == 'b' ? black : white).getMove(board);
+            board.play(player, move.getSquare());
+            player = player == 'w' ? 'b' : 'w';
+        }
+        return board.count('b') - board.count('w');
+    }
+}
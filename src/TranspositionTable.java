@@ -0,0 +1,108 @@
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table of search results keyed by Zobrist key. The table is
+ * sized from a memory budget and rounded down to a power of two so the index
+ * is just the low bits of the key. Entries are packed into a single long:
+ *
+ * bits 0-31 score, 32-39 depth, 40-41 bound, 42-48 best move, 49-56 age
+ *
+ * Slots come in pairs. The first keeps the deepest result (unless it is from
+ * an older search), the second is always replaced, so deep results survive
+ * while recent shallow ones are still found. Entries are only aged, never
+ * cleared, between searches, so later moves of a game start warm.
+ *
+ * The table is shared by search threads without locking. Each slot stores the
+ * key XORed with the data, so if two threads race on a slot and the key and
+ * data come from different writes, the probe simply sees a miss.
+ */
+public class TranspositionTable {
+    static final int EXACT = 0;
+    static final int LOWER = 1; // score is at least this (failed high)
+    static final int UPPER = 2; // score is at most this (failed low)
+    static final int NO_MOVE = 127;
+
+    private static final int ENTRY_BYTES = 16; // key and data
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private int age;
+
+    /**
+     * @param megabytes
+     *            memory budget, at least one pair of slots is always allocated
+     */
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max(2, (long) megabytes * 1024 * 1024 / ENTRY_BYTES);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 2; // index of the first slot of a pair
+    }
+
+    /**
+     * Start a new search. Entries from earlier searches stay valid but become
+     * the first to be replaced.
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * @return the packed entry for key, 0 if there is none
+     */
+    public long probe(long key) {
+        int index = (int) key & mask;
+        long entry = data[index];
+        if ((keys[index] ^ entry) == key)
+            return entry;
+        entry = data[index + 1];
+        if ((keys[index + 1] ^ entry) == key)
+            return entry;
+        return 0;
+    }
+
+    public void store(long key, int depth, int bound, int score, int move) {
+        int index = (int) key & mask;
+        long entry = (score & 0xFFFFFFFFL) | ((long) depth << 32) | ((long) bound << 40) | ((long) move << 42)
+                | ((long) age << 49);
+        long first = data[index];
+        if ((keys[index] ^ first) == key || depth >= depth(first) || age(first) != age) {
+            keys[index] = key ^ entry;
+            data[index] = entry;
+        } else {
+            keys[index + 1] = key ^ entry;
+            data[index + 1] = entry;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    static int score(long entry) {
+        return (int) entry;
+    }
+
+    static int depth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    static int bound(long entry) {
+        return (int) (entry >>> 40) & 0x3;
+    }
+
+    static int move(long entry) {
+        return (int) (entry >>> 42) & 0x7F;
+    }
+
+    private static int age(long entry) {
+        return (int) (entry >>> 49) & 0xFF;
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.Random;
+
+/**
+ * Zobrist hashing for board positions. Every (colour, square) pair gets a
+ * random 64-bit key and a position hashes to the XOR of the keys of its discs,
+ * so a move can update the hash by XORing in only the squares it changes.
+ */
+public class Zobrist {
+    private static final long[][] KEYS = new long[2][64]; // [0] black, [1] white
+    private static final long[] FLIP = new long[64]; // turns a black disc white and back
+    static final long SIDE; // XORed in when white is to move
+
+    static {
+        Random random = new Random(0x5EED0FF1L); // fixed so hashes are stable between runs
+        for (int square = 0; square < 64; square++) {
+            KEYS[0][square] = random.nextLong();
+            KEYS[1][square] = random.nextLong();
+            FLIP[square] = KEYS[0][square] ^ KEYS[1][square];
+        }
+        SIDE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Hash a position from scratch
+     */
+    public static long hash(Board board) {
+        return hash(board.getDiscs('b'), board.getDiscs('w'));
+    }
+
+    public static long hash(long black, long white) {
+        long hash = 0;
+        for (long discs = black; discs != 0; discs &= discs - 1)
+            hash ^= KEYS[0][Long.numberOfTrailingZeros(discs)];
+        for (long discs = white; discs != 0; discs &= discs - 1)
+            hash ^= KEYS[1][Long.numberOfTrailingZeros(discs)];
+        return hash;
+    }
+
+    /**
+     * Hash change for player placing on square and flipping the discs in flips.
+     * Applying it a second time takes the move back.
+     */
+    public static long move(char player, int square, long flips) {
+        long delta = KEYS[player == 'b' ? 0 : 1][square];
+        for (; flips != 0; flips &= flips - 1)
+            delta ^= FLIP[Long.numberOfTrailingZeros(flips)];
+        return delta;
+    }
+
+    /**
+     * @return the key for a position hash with side to move
+     */
+    public static long key(long hash, char side) {
+        return side == 'w' ? hash ^ SIDE : hash;
+    }
+}
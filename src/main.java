@@ -1,11 +1,21 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 public class main {
 
     public static void main(String[] args) {
         try {
             Game game = Game.newGame();
-            GUI gui = new GUI("Othello", game, new AI('w', game, 2));
-        } catch(InterruptedException ie) {
-            ie.printStackTrace();
+            AI ai = new AI('w', game, 2);
+            ai.setPonder(true);
+            Path book = Paths.get("othello.book");
+            if (Files.exists(book))
+                ai.setBook(OpeningBook.open(book));
+            GUI gui = new GUI("Othello", game, ai);
+        } catch(InterruptedException | IOException e) {
+            e.printStackTrace();
         }
     }
 